@@ -0,0 +1,117 @@
+import SourceCode.ChunkedLongList;
+import SourceCode.ChunkedRecordList;
+
+/**
+ * ChunkedLongList和ChunkedRecordList（堆外的块）的检查
+ * ①.removeLast之后再添加：ChunkedRecordList复用的位置要重新清零（highWater以下），保留的空块里也有旧数据
+ * ②.removeLast时多余的块马上释放，只保留一个空块；offHeapBytes跟着块数变化
+ * ③.close之后块全部释放，再写入抛IllegalStateException，读也不会碰到已释放的内存
+ */
+public class OffHeapListTest {
+
+    public static void main(String[] args) {
+        recordList();
+        longList();
+        useAfterClose();
+        System.out.println("ChunkedRecordList、ChunkedLongList：全部正确");
+    }
+
+    //每块16条记录  写满3块再删到只剩8条，删掉的位置都留着旧数据
+    static void recordList() {
+        int shift = 4;
+        int recordSize = 12;
+        try (ChunkedRecordList list = new ChunkedRecordList(recordSize, shift)) {
+            for (int i = 0; i < 48; i++) {
+                long index = list.addBlank();
+                list.putLong(index, 0, -1L);
+                list.putInt(index, 8, i + 1);
+            }
+            check(list.chunkCount() == 3, "写满3块后chunkCount=" + list.chunkCount());
+            check(list.offHeapBytes() == 3L * recordSize << shift, "写满3块后offHeapBytes=" + list.offHeapBytes());
+
+            for (int i = 0; i < 40; i++)
+                list.removeLast();
+            //8条记录只需要1块，另外保留1个空块
+            check(list.size() == 8 && list.chunkCount() == 2, "删到8条后chunkCount=" + list.chunkCount());
+            check(list.offHeapBytes() == 2L * recordSize << shift, "删到8条后offHeapBytes=" + list.offHeapBytes());
+
+            //第0块的后半段和保留的第1块是复用的，第2块是重新分配的
+            for (int i = 8; i < 48; i++) {
+                long index = list.addBlank();
+                check(list.getLong(index, 0) == 0 && list.getInt(index, 8) == 0, "addBlank复用的位置没有清零：" + index);
+            }
+            for (int i = 0; i < 8; i++)
+                check(list.getInt(i, 8) == i + 1, "没删的记录被改了：" + i);
+
+            list.clear();
+            check(list.chunkCount() == 0 && list.offHeapBytes() == 0, "clear后chunkCount=" + list.chunkCount());
+            long index = list.addBlank();
+            check(list.getLong(index, 0) == 0 && list.getInt(index, 8) == 0, "clear后addBlank的记录不是全0");
+        }
+    }
+
+    static void longList() {
+        int shift = 4;
+        try (ChunkedLongList list = new ChunkedLongList(shift, true)) {
+            for (int i = 0; i < 48; i++)
+                list.add(i + 1);
+            check(list.chunkCount() == 3, "写满3块后chunkCount=" + list.chunkCount());
+            check(list.offHeapBytes() == 3L * 8 << shift, "写满3块后offHeapBytes=" + list.offHeapBytes());
+
+            for (int i = 47; i >= 8; i--)
+                check(list.removeLast() == i + 1, "removeLast返回了错误的值：" + i);
+            check(list.size() == 8 && list.chunkCount() == 2, "删到8个后chunkCount=" + list.chunkCount());
+            check(list.offHeapBytes() == 2L * 8 << shift, "删到8个后offHeapBytes=" + list.offHeapBytes());
+
+            for (int i = 8; i < 48; i++)
+                list.add(-i);
+            for (int i = 0; i < 48; i++)
+                check(list.get(i) == (i < 8 ? i + 1 : -i), "重新添加后get(" + i + ")=" + list.get(i));
+            long[] sum = new long[1];
+            list.forEach(e -> sum[0] += e);
+            check(sum[0] == 36 - (8 + 47) * 40 / 2, "forEach的和=" + sum[0]);
+
+            list.clear();
+            check(list.chunkCount() == 0 && list.offHeapBytes() == 0, "clear后chunkCount=" + list.chunkCount());
+        }
+    }
+
+    static void useAfterClose() {
+        ChunkedRecordList records = new ChunkedRecordList(8, 4);
+        records.putLong(records.addBlank(), 0, 42);
+        records.close();
+        check(records.size() == 0 && records.chunkCount() == 0 && records.offHeapBytes() == 0,
+                "ChunkedRecordList close后还占着块");
+        expectThrows(IllegalStateException.class, records::addBlank, "ChunkedRecordList close后addBlank");
+        expectThrows(IllegalStateException.class, records::clear, "ChunkedRecordList close后clear");
+        expectThrows(IndexOutOfBoundsException.class, () -> records.getLong(0, 0), "ChunkedRecordList close后getLong");
+        //重复close没有影响
+        records.close();
+
+        ChunkedLongList longs = new ChunkedLongList(4, true);
+        longs.add(42);
+        longs.close();
+        check(longs.size() == 0 && longs.chunkCount() == 0 && longs.offHeapBytes() == 0,
+                "ChunkedLongList close后还占着块");
+        expectThrows(IllegalStateException.class, () -> longs.add(1), "ChunkedLongList close后add");
+        expectThrows(IllegalStateException.class, longs::clear, "ChunkedLongList close后clear");
+        expectThrows(IndexOutOfBoundsException.class, () -> longs.get(0), "ChunkedLongList close后get");
+        longs.close();
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition)
+            throw new IllegalStateException(message);
+    }
+
+    static void expectThrows(Class<? extends RuntimeException> type, Runnable action, String what) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            if (type.isInstance(e))
+                return;
+            throw new IllegalStateException(what + "：抛出了" + e, e);
+        }
+        throw new IllegalStateException(what + "：没有抛出" + type.getSimpleName());
+    }
+}
@@ -0,0 +1,189 @@
+package SourceCode;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * 分块的大顺序表  下标是long
+ * ArrayListCode的容量上限是MAX_ARRAY_SIZE，而且每次grow都用Arrays.copyOf把整个数组复制一遍，元素越多复制越贵
+ * 这里把元素放在固定大小（2^chunkShift个）的块里，扩容只是新分配一个块，已有的元素从不复制；
+ * 需要扩容的只有存放块引用的chunks数组，它按ArrayListCode的1.5倍规则增长，长度是元素数的1/2^chunkShift
+ * get(long)就是chunks[index >>> chunkShift][index & mask]，仍然是O(1)
+ *
+ * 只支持在末尾增删（add/removeLast），中间插入要移动后面所有的块，对几十亿元素的表没有意义
+ * 基本类型和定长记录见ChunkedLongList、ChunkedRecordList，它们还可以把块放在堆外
+ */
+public class ChunkedList<E> implements Iterable<E> {
+    // 默认每块16384个元素
+    static final int DEFAULT_CHUNK_SHIFT = 14;
+    // chunks数组的初始容量
+    static final int DEFAULT_SPINE_CAPACITY = 8;
+    // 最大数组容量
+    static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final int chunkShift;
+    private final int chunkMask;
+    // 块，前chunkCount个已经分配
+    private Object[][] chunks;
+    private int chunkCount;
+    private long size;
+    private int modCount;
+
+    public ChunkedList() {
+        this(DEFAULT_CHUNK_SHIFT);
+    }
+
+    //每块2^chunkShift个元素
+    public ChunkedList(int chunkShift) {
+        if (chunkShift < 0 || chunkShift > 30)
+            throw new IllegalArgumentException("Illegal chunkShift: " + chunkShift);
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1 << chunkShift) - 1;
+        this.chunks = new Object[DEFAULT_SPINE_CAPACITY][];
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    //添加到末尾  当前块满了就分配一个新块
+    public void add(E e) {
+        int c = (int) (size >>> chunkShift);
+        if (c == chunkCount)
+            addChunk();
+        chunks[c][(int) size & chunkMask] = e;
+        size++;
+        modCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(long index) {
+        rangeCheck(index);
+        return (E) chunks[(int) (index >>> chunkShift)][(int) index & chunkMask];
+    }
+
+    //返回旧值
+    @SuppressWarnings("unchecked")
+    public E set(long index, E element) {
+        rangeCheck(index);
+        Object[] chunk = chunks[(int) (index >>> chunkShift)];
+        int i = (int) index & chunkMask;
+        E oldValue = (E) chunk[i];
+        chunk[i] = element;
+        return oldValue;
+    }
+
+    //删除并返回最后一个元素
+    @SuppressWarnings("unchecked")
+    public E removeLast() {
+        if (size == 0)
+            throw new NoSuchElementException();
+        long index = --size;
+        Object[] chunk = chunks[(int) (index >>> chunkShift)];
+        int i = (int) index & chunkMask;
+        E oldValue = (E) chunk[i];
+        chunk[i] = null; // clear to let GC do its work
+        modCount++;
+        releaseSpareChunks();
+        return oldValue;
+    }
+
+    //清空并释放所有块
+    public void clear() {
+        for (int c = 0; c < chunkCount; c++)
+            chunks[c] = null;
+        chunkCount = 0;
+        size = 0;
+        modCount++;
+    }
+
+    //已分配的块数  每块2^chunkShift个元素
+    public int chunkCount() {
+        return chunkCount;
+    }
+
+    public void forEach(Consumer<? super E> action) {
+        final int expectedModCount = modCount;
+        long remaining = size;
+        for (int c = 0; remaining > 0; c++) {
+            Object[] chunk = chunks[c];
+            int n = (int) Math.min(remaining, chunk.length);
+            for (int i = 0; i < n; i++) {
+                @SuppressWarnings("unchecked") E e = (E) chunk[i];
+                action.accept(e);
+            }
+            remaining -= n;
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private class Itr implements Iterator<E> {
+        long cursor;
+        int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            long i = cursor;
+            if (i >= size)
+                throw new NoSuchElementException();
+            cursor = i + 1;
+            return (E) chunks[(int) (i >>> chunkShift)][(int) i & chunkMask];
+        }
+    }
+
+    private void addChunk() {
+        if (chunkCount == chunks.length)
+            chunks = Arrays.copyOf(chunks, growSpine(chunks.length, chunkCount + 1));
+        chunks[chunkCount++] = new Object[1 << chunkShift];
+    }
+
+    //删除后最多保留一个空块  避免在块边界上反复add/removeLast时反复分配
+    private void releaseSpareChunks() {
+        int needed = (int) ((size + chunkMask) >>> chunkShift);
+        while (chunkCount > needed + 1)
+            chunks[--chunkCount] = null;
+    }
+
+    //chunks数组的扩容  和ArrayListCode.grow一样是1.5倍，超过MAX_ARRAY_SIZE时按hugeCapacity处理
+    static int growSpine(int oldCapacity, int minCapacity) {
+        // overflow-conscious code
+        int newCapacity = oldCapacity + (oldCapacity >> 1);
+        if (newCapacity - minCapacity < 0)
+            newCapacity = minCapacity;
+        if (newCapacity - MAX_ARRAY_SIZE > 0)
+            newCapacity = hugeCapacity(minCapacity);
+        return newCapacity;
+    }
+
+    static int hugeCapacity(int minCapacity) {
+        if (minCapacity < 0) // overflow
+            throw new OutOfMemoryError();
+        return (minCapacity > MAX_ARRAY_SIZE) ?
+                Integer.MAX_VALUE :
+                MAX_ARRAY_SIZE;
+    }
+
+    private void rangeCheck(long index) {
+        if (index >= size || index < 0)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+}
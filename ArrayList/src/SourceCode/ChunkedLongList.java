@@ -0,0 +1,200 @@
+package SourceCode;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+
+/**
+ * long专用的分块大顺序表  下标是long
+ * 分块方式和ChunkedList一样：扩容只分配新块，不复制已有元素，get(long)是O(1)
+ * 块可以放在堆上（long[]）或堆外（DirectByteBuffer）：几十亿个long放在堆上会让每次full GC都要扫描几十G的数组，
+ * 放在堆外时GC只看到几个buffer对象，代价是每个块受-XX:MaxDirectMemorySize限制，用完要close()
+ *
+ * int、double可以分别用long存放（Double.doubleToRawLongBits），多个字段的定长记录见ChunkedRecordList
+ */
+public class ChunkedLongList implements AutoCloseable {
+    // 堆外的块最大1G字节
+    static final int MAX_OFF_HEAP_CHUNK_SHIFT = 27;
+
+    private final int chunkShift;
+    private final int chunkMask;
+    private final boolean offHeap;
+    // 堆上的块
+    private long[][] heapChunks;
+    // 堆外的块  offHeapViews是对应的LongBuffer视图，按本机字节序读写
+    private ByteBuffer[] offHeapChunks;
+    private LongBuffer[] offHeapViews;
+    private int chunkCount;
+    private long size;
+    private boolean closed;
+
+    public ChunkedLongList() {
+        this(ChunkedList.DEFAULT_CHUNK_SHIFT, false);
+    }
+
+    //每块2^chunkShift个元素，offHeap为true时块放在堆外
+    public ChunkedLongList(int chunkShift, boolean offHeap) {
+        int maxShift = offHeap ? MAX_OFF_HEAP_CHUNK_SHIFT : 30;
+        if (chunkShift < 0 || chunkShift > maxShift)
+            throw new IllegalArgumentException("Illegal chunkShift: " + chunkShift);
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1 << chunkShift) - 1;
+        this.offHeap = offHeap;
+        if (offHeap) {
+            offHeapChunks = new ByteBuffer[ChunkedList.DEFAULT_SPINE_CAPACITY];
+            offHeapViews = new LongBuffer[ChunkedList.DEFAULT_SPINE_CAPACITY];
+        } else {
+            heapChunks = new long[ChunkedList.DEFAULT_SPINE_CAPACITY][];
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public void add(long e) {
+        ensureOpen();
+        int c = (int) (size >>> chunkShift);
+        if (c == chunkCount)
+            addChunk();
+        int i = (int) size & chunkMask;
+        if (offHeap)
+            offHeapViews[c].put(i, e);
+        else
+            heapChunks[c][i] = e;
+        size++;
+    }
+
+    public long get(long index) {
+        rangeCheck(index);
+        int c = (int) (index >>> chunkShift);
+        int i = (int) index & chunkMask;
+        return offHeap ? offHeapViews[c].get(i) : heapChunks[c][i];
+    }
+
+    //返回旧值
+    public long set(long index, long element) {
+        rangeCheck(index);
+        int c = (int) (index >>> chunkShift);
+        int i = (int) index & chunkMask;
+        long oldValue;
+        if (offHeap) {
+            oldValue = offHeapViews[c].get(i);
+            offHeapViews[c].put(i, element);
+        } else {
+            oldValue = heapChunks[c][i];
+            heapChunks[c][i] = element;
+        }
+        return oldValue;
+    }
+
+    public long removeLast() {
+        if (size == 0)
+            throw new NoSuchElementException();
+        long oldValue = get(size - 1);
+        size--;
+        //删除后最多保留一个空块
+        int needed = (int) ((size + chunkMask) >>> chunkShift);
+        while (chunkCount > needed + 1)
+            releaseChunk(--chunkCount);
+        return oldValue;
+    }
+
+    //清空  块都释放掉
+    public void clear() {
+        ensureOpen();
+        while (chunkCount > 0)
+            releaseChunk(--chunkCount);
+        size = 0;
+    }
+
+    public void forEach(LongConsumer action) {
+        long remaining = size;
+        for (int c = 0; remaining > 0; c++) {
+            int n = (int) Math.min(remaining, 1L << chunkShift);
+            if (offHeap) {
+                LongBuffer chunk = offHeapViews[c];
+                for (int i = 0; i < n; i++)
+                    action.accept(chunk.get(i));
+            } else {
+                long[] chunk = heapChunks[c];
+                for (int i = 0; i < n; i++)
+                    action.accept(chunk[i]);
+            }
+            remaining -= n;
+        }
+    }
+
+    public int chunkCount() {
+        return chunkCount;
+    }
+
+    //堆外占用的字节数  堆上时为0
+    public long offHeapBytes() {
+        return offHeap ? (long) chunkCount << (chunkShift + 3) : 0;
+    }
+
+    //释放堆外内存  之后不能再访问
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        while (chunkCount > 0)
+            releaseChunk(--chunkCount);
+        size = 0;
+        closed = true;
+    }
+
+    private void addChunk() {
+        int length = offHeap ? offHeapChunks.length : heapChunks.length;
+        if (chunkCount == length) {
+            int newLength = ChunkedList.growSpine(length, chunkCount + 1);
+            if (offHeap) {
+                offHeapChunks = Arrays.copyOf(offHeapChunks, newLength);
+                offHeapViews = Arrays.copyOf(offHeapViews, newLength);
+            } else {
+                heapChunks = Arrays.copyOf(heapChunks, newLength);
+            }
+        }
+        if (offHeap) {
+            ByteBuffer chunk = ByteBuffer.allocateDirect(8 << chunkShift).order(ByteOrder.nativeOrder());
+            offHeapChunks[chunkCount] = chunk;
+            offHeapViews[chunkCount] = chunk.asLongBuffer();
+        } else {
+            heapChunks[chunkCount] = new long[1 << chunkShift];
+        }
+        chunkCount++;
+    }
+
+    private void releaseChunk(int c) {
+        if (offHeap) {
+            ByteBuffer chunk = offHeapChunks[c];
+            offHeapChunks[c] = null;
+            offHeapViews[c] = null;
+            DirectMemory.free(chunk);
+        } else {
+            heapChunks[c] = null;
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed)
+            throw new IllegalStateException("ChunkedLongList is closed");
+    }
+
+    private void rangeCheck(long index) {
+        if (index >= size || index < 0)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+}
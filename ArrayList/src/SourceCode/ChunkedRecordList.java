@@ -0,0 +1,235 @@
+package SourceCode;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * 堆外的定长记录分块顺序表  下标是long
+ * 每条记录固定recordSize字节，按块存放在DirectByteBuffer里，每块2^chunkShift条记录；扩容只分配新块，不复制已有记录
+ * 第index条记录在块index >>> chunkShift里，块内偏移是(index & mask) * recordSize，读写都是O(1)
+ *
+ * 记录没有对象头也不在堆上，几十亿条事件记录不会增加GC的负担；字段按偏移读写，例如
+ *     long i = list.addBlank();
+ *     list.putLong(i, 0, timestamp);
+ *     list.putInt(i, 8, type);
+ * 字段用本机字节序  用完要close()
+ */
+public class ChunkedRecordList implements AutoCloseable {
+    // 每块最多1G字节
+    static final int MAX_CHUNK_BYTES = 1 << 30;
+
+    private final int recordSize;
+    private final int chunkShift;
+    private final int chunkMask;
+    private ByteBuffer[] chunks;
+    private int chunkCount;
+    private long size;
+    // 写过的记录的上界  下标小于它的位置可能留有removeLast之前的旧数据
+    private long highWater;
+    private boolean closed;
+
+    public ChunkedRecordList(int recordSize) {
+        this(recordSize, ChunkedList.DEFAULT_CHUNK_SHIFT);
+    }
+
+    //每条记录recordSize字节，每块2^chunkShift条记录
+    public ChunkedRecordList(int recordSize, int chunkShift) {
+        if (recordSize <= 0)
+            throw new IllegalArgumentException("Illegal recordSize: " + recordSize);
+        if (chunkShift < 0 || chunkShift > 30 || ((long) recordSize << chunkShift) > MAX_CHUNK_BYTES)
+            throw new IllegalArgumentException("Illegal chunkShift: " + chunkShift);
+        this.recordSize = recordSize;
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1 << chunkShift) - 1;
+        this.chunks = new ByteBuffer[ChunkedList.DEFAULT_SPINE_CAPACITY];
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int recordSize() {
+        return recordSize;
+    }
+
+    //在末尾添加一条全0的记录，返回它的下标
+    public long addBlank() {
+        ensureOpen();
+        int c = (int) (size >>> chunkShift);
+        if (c == chunkCount)
+            addChunk();
+        if (size < highWater)
+            clearRecord(chunks[c], offset(size));
+        else
+            highWater = size + 1;
+        return size++;
+    }
+
+    //在末尾添加一条记录  record的长度必须是recordSize，返回它的下标
+    public long add(byte[] record) {
+        checkLength(record.length);
+        long index = addBlank();
+        write(index, record);
+        return index;
+    }
+
+    //从src的当前位置读recordSize字节作为一条记录
+    public long add(ByteBuffer src) {
+        if (src.remaining() < recordSize)
+            throw new BufferUnderflowException();
+        long index = addBlank();
+        ByteBuffer dst = chunks[(int) (index >>> chunkShift)].duplicate();
+        dst.position(offset(index));
+        ByteBuffer in = src.duplicate();
+        in.limit(in.position() + recordSize);
+        dst.put(in);
+        src.position(src.position() + recordSize);
+        return index;
+    }
+
+    //把第index条记录复制到dst
+    public void get(long index, byte[] dst) {
+        rangeCheck(index);
+        checkLength(dst.length);
+        ByteBuffer chunk = chunks[(int) (index >>> chunkShift)].duplicate();
+        chunk.position(offset(index));
+        chunk.get(dst, 0, recordSize);
+    }
+
+    //覆盖第index条记录
+    public void set(long index, byte[] record) {
+        rangeCheck(index);
+        checkLength(record.length);
+        write(index, record);
+    }
+
+    public long getLong(long index, int fieldOffset) {
+        return chunkOf(index, fieldOffset, 8).getLong(offset(index) + fieldOffset);
+    }
+
+    public void putLong(long index, int fieldOffset, long value) {
+        chunkOf(index, fieldOffset, 8).putLong(offset(index) + fieldOffset, value);
+    }
+
+    public int getInt(long index, int fieldOffset) {
+        return chunkOf(index, fieldOffset, 4).getInt(offset(index) + fieldOffset);
+    }
+
+    public void putInt(long index, int fieldOffset, int value) {
+        chunkOf(index, fieldOffset, 4).putInt(offset(index) + fieldOffset, value);
+    }
+
+    public double getDouble(long index, int fieldOffset) {
+        return chunkOf(index, fieldOffset, 8).getDouble(offset(index) + fieldOffset);
+    }
+
+    public void putDouble(long index, int fieldOffset, double value) {
+        chunkOf(index, fieldOffset, 8).putDouble(offset(index) + fieldOffset, value);
+    }
+
+    public byte getByte(long index, int fieldOffset) {
+        return chunkOf(index, fieldOffset, 1).get(offset(index) + fieldOffset);
+    }
+
+    public void putByte(long index, int fieldOffset, byte value) {
+        chunkOf(index, fieldOffset, 1).put(offset(index) + fieldOffset, value);
+    }
+
+    //删除最后一条记录  删除后最多保留一个空块
+    public void removeLast() {
+        if (size == 0)
+            throw new NoSuchElementException();
+        size--;
+        int needed = (int) ((size + chunkMask) >>> chunkShift);
+        while (chunkCount > needed + 1)
+            releaseChunk(--chunkCount);
+    }
+
+    public void clear() {
+        ensureOpen();
+        while (chunkCount > 0)
+            releaseChunk(--chunkCount);
+        size = 0;
+    }
+
+    public int chunkCount() {
+        return chunkCount;
+    }
+
+    public long offHeapBytes() {
+        return (long) chunkCount * recordSize << chunkShift;
+    }
+
+    //释放堆外内存  之后不能再访问
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        while (chunkCount > 0)
+            releaseChunk(--chunkCount);
+        size = 0;
+        closed = true;
+    }
+
+    private void write(long index, byte[] record) {
+        ByteBuffer chunk = chunks[(int) (index >>> chunkShift)].duplicate();
+        chunk.position(offset(index));
+        chunk.put(record, 0, recordSize);
+    }
+
+    //第index条记录在块内的字节偏移
+    private int offset(long index) {
+        return ((int) index & chunkMask) * recordSize;
+    }
+
+    //检查下标和字段范围，返回记录所在的块
+    private ByteBuffer chunkOf(long index, int fieldOffset, int width) {
+        rangeCheck(index);
+        if (fieldOffset < 0 || fieldOffset > recordSize - width)
+            throw new IndexOutOfBoundsException("Field offset: " + fieldOffset + ", width: " + width
+                    + ", recordSize: " + recordSize);
+        return chunks[(int) (index >>> chunkShift)];
+    }
+
+    //复用的块里可能有removeLast留下的旧数据
+    private void clearRecord(ByteBuffer chunk, int offset) {
+        for (int i = 0; i < recordSize; i++)
+            chunk.put(offset + i, (byte) 0);
+    }
+
+    private void addChunk() {
+        if (chunkCount == chunks.length)
+            chunks = Arrays.copyOf(chunks, ChunkedList.growSpine(chunks.length, chunkCount + 1));
+        //allocateDirect分配的内存是清零的
+        chunks[chunkCount++] = ByteBuffer.allocateDirect(recordSize << chunkShift).order(ByteOrder.nativeOrder());
+    }
+
+    private void releaseChunk(int c) {
+        ByteBuffer chunk = chunks[c];
+        chunks[c] = null;
+        highWater = Math.min(highWater, (long) c << chunkShift);
+        DirectMemory.free(chunk);
+    }
+
+    private void checkLength(int length) {
+        if (length != recordSize)
+            throw new IllegalArgumentException("Record length " + length + " != recordSize " + recordSize);
+    }
+
+    private void ensureOpen() {
+        if (closed)
+            throw new IllegalStateException("ChunkedRecordList is closed");
+    }
+
+    private void rangeCheck(long index) {
+        if (index >= size || index < 0)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+}
@@ -0,0 +1,301 @@
+package SourceCode;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+/**
+ * long专用的顺序表
+ * 和IntArrayList一样，把ArrayListCode的Object[]换成long[]，一个元素8字节，不再为每个元素装箱一个Long对象
+ * 扩容策略和ArrayListCode完全一样：第一次add扩到10，之后每次扩到1.5倍，超过MAX_ARRAY_SIZE交给hugeCapacity
+ * 按下标删除叫removeAt，按值删除叫removeValue
+ */
+public class LongArrayList {
+    // 数组初始容量为 10
+    private static final int DEFAULT_CAPACITY = 10;
+    // 空数组
+    private static final long[] EMPTY_ELEMENTDATA = {};
+    // 缺省空数组  第一次add时扩到DEFAULT_CAPACITY
+    private static final long[] DEFAULTCAPACITY_EMPTY_ELEMENTDATA = {};
+    // 最大数组容量
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    // 底层数据结构，数组
+    private long[] elementData;
+    // 数组元素个数，默认为0
+    private int size;
+    // 结构修改次数  forEach用来检测遍历过程中的修改
+    private int modCount;
+
+    public LongArrayList() {
+        this.elementData = DEFAULTCAPACITY_EMPTY_ELEMENTDATA;
+    }
+
+    public LongArrayList(int initialCapacity) {
+        if (initialCapacity > 0) {
+            this.elementData = new long[initialCapacity];
+        } else if (initialCapacity == 0) {
+            this.elementData = EMPTY_ELEMENTDATA;
+        } else {
+            throw new IllegalArgumentException("Illegal Capacity: " +
+                    initialCapacity);
+        }
+    }
+
+    //复制一个long数组的内容
+    public LongArrayList(long[] a) {
+        if ((size = a.length) != 0)
+            elementData = Arrays.copyOf(a, size);
+        else
+            elementData = EMPTY_ELEMENTDATA;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    //添加一个元素到末尾
+    public boolean add(long e) {
+        ensureCapacityInternal(size + 1);  // Increments modCount!!
+        elementData[size++] = e;
+        return true;
+    }
+
+    //在指定位置添加一个元素  后面的元素整体后移一位
+    public void add(int index, long element) {
+        rangeCheckForAdd(index);
+        ensureCapacityInternal(size + 1);  // Increments modCount!!
+        System.arraycopy(elementData, index, elementData, index + 1,
+                size - index);
+        elementData[index] = element;
+        size++;
+    }
+
+    //添加一个数组的全部元素
+    public boolean addAll(long[] a) {
+        int numNew = a.length;
+        ensureCapacityInternal(size + numNew);  // Increments modCount
+        System.arraycopy(a, 0, elementData, size, numNew);
+        size += numNew;
+        return numNew != 0;
+    }
+
+    public boolean addAll(LongArrayList list) {
+        int numNew = list.size;
+        ensureCapacityInternal(size + numNew);  // Increments modCount
+        System.arraycopy(list.elementData, 0, elementData, size, numNew);
+        size += numNew;
+        return numNew != 0;
+    }
+
+    public long get(int index) {
+        rangeCheck(index);
+        return elementData[index];
+    }
+
+    //返回旧值
+    public long set(int index, long element) {
+        rangeCheck(index);
+        long oldValue = elementData[index];
+        elementData[index] = element;
+        return oldValue;
+    }
+
+    //根据索引删除  后面的元素整体前移一位，返回删除的元素
+    public long removeAt(int index) {
+        rangeCheck(index);
+        modCount++;
+        long oldValue = elementData[index];
+        int numMoved = size - index - 1;
+        if (numMoved > 0)
+            System.arraycopy(elementData, index + 1, elementData, index,
+                    numMoved);
+        //基本类型不需要置空帮助GC
+        size--;
+        return oldValue;
+    }
+
+    //删除第一个等于o的元素
+    public boolean removeValue(long o) {
+        int index = indexOf(o);
+        if (index < 0)
+            return false;
+        removeAt(index);
+        return true;
+    }
+
+    public int indexOf(long o) {
+        for (int i = 0; i < size; i++)
+            if (elementData[i] == o)
+                return i;
+        return -1;
+    }
+
+    public int lastIndexOf(long o) {
+        for (int i = size - 1; i >= 0; i--)
+            if (elementData[i] == o)
+                return i;
+        return -1;
+    }
+
+    public boolean contains(long o) {
+        return indexOf(o) >= 0;
+    }
+
+    //只把size清零  数组留着下次用
+    public void clear() {
+        modCount++;
+        size = 0;
+    }
+
+    //升序排序
+    public void sort() {
+        Arrays.sort(elementData, 0, size);
+        modCount++;
+    }
+
+    //列表必须已经升序  找到返回下标，找不到返回-(插入点)-1，和Arrays.binarySearch一样
+    public int binarySearch(long key) {
+        return Arrays.binarySearch(elementData, 0, size, key);
+    }
+
+    public void forEach(LongConsumer action) {
+        final int expectedModCount = modCount;
+        final long[] elementData = this.elementData;
+        final int size = this.size;
+        for (int i = 0; modCount == expectedModCount && i < size; i++)
+            action.accept(elementData[i]);
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+    }
+
+    public LongStream stream() {
+        return Arrays.stream(elementData, 0, size);
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(elementData, size);
+    }
+
+    //提前扩容  已知数据量时可以避免多次拷贝
+    public void ensureCapacity(int minCapacity) {
+        int minExpand = (elementData != DEFAULTCAPACITY_EMPTY_ELEMENTDATA)
+                // any size if not default element table
+                ? 0
+                // larger than default for default empty table. It's already
+                // supposed to be at default size.
+                : DEFAULT_CAPACITY;
+
+        if (minCapacity > minExpand) {
+            ensureExplicitCapacity(minCapacity);
+        }
+    }
+
+    //把容量缩小到size
+    public void trimToSize() {
+        modCount++;
+        if (size < elementData.length) {
+            elementData = (size == 0)
+                    ? EMPTY_ELEMENTDATA
+                    : Arrays.copyOf(elementData, size);
+        }
+    }
+
+    //确保内部容量够用
+    private void ensureCapacityInternal(int minCapacity) {
+        ensureExplicitCapacity(calculateCapacity(elementData, minCapacity));
+    }
+
+    //缺省空数组第一次扩容时至少扩到DEFAULT_CAPACITY
+    private static int calculateCapacity(long[] elementData, int minCapacity) {
+        if (elementData == DEFAULTCAPACITY_EMPTY_ELEMENTDATA) {
+            return Math.max(DEFAULT_CAPACITY, minCapacity);
+        }
+        return minCapacity;
+    }
+
+    private void ensureExplicitCapacity(int minCapacity) {
+        modCount++;
+
+        // overflow-conscious code
+        if (minCapacity - elementData.length > 0)
+            grow(minCapacity);
+    }
+
+    //扩容核心方法  新容量是旧容量的1.5倍
+    private void grow(int minCapacity) {
+        // overflow-conscious code
+        int oldCapacity = elementData.length;
+        int newCapacity = oldCapacity + (oldCapacity >> 1);
+        if (newCapacity - minCapacity < 0)
+            newCapacity = minCapacity;
+        if (newCapacity - MAX_ARRAY_SIZE > 0)
+            newCapacity = hugeCapacity(minCapacity);
+        elementData = Arrays.copyOf(elementData, newCapacity);
+    }
+
+    private static int hugeCapacity(int minCapacity) {
+        if (minCapacity < 0) // overflow
+            throw new OutOfMemoryError();
+        return (minCapacity > MAX_ARRAY_SIZE) ?
+                Integer.MAX_VALUE :
+                MAX_ARRAY_SIZE;
+    }
+
+    private void rangeCheck(int index) {
+        //负数下标也报IndexOutOfBoundsException
+        if (index >= size || index < 0)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    private void rangeCheckForAdd(int index) {
+        if (index > size || index < 0)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    private String outOfBoundsMsg(int index) {
+        return "Index: " + index + ", Size: " + size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof LongArrayList))
+            return false;
+        LongArrayList other = (LongArrayList) o;
+        if (size != other.size)
+            return false;
+        for (int i = 0; i < size; i++)
+            if (elementData[i] != other.elementData[i])
+                return false;
+        return true;
+    }
+
+    //和List<Long>.hashCode()的结果一致
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+        for (int i = 0; i < size; i++)
+            hashCode = 31 * hashCode + Long.hashCode(elementData[i]);
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        if (size == 0)
+            return "[]";
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(elementData[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
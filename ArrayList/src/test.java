@@ -1,3 +1,5 @@
+import SourceCode.IntArrayList;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -23,6 +25,16 @@ public class test {
         long endTime1 = System.currentTimeMillis();
         System.out.println("使用ensureCapacity方法后：" + (endTime1 - startTime1));
 
+        //上面两次的时间大部分花在把int装箱成Integer和GC上，IntArrayList直接存int[]
+        IntArrayList intList = new IntArrayList();
+        long startTime2 = System.currentTimeMillis();
+        intList.ensureCapacity(N);
+        for (int i = 0; i < N; i++) {
+            intList.add(i);
+        }
+        long endTime2 = System.currentTimeMillis();
+        System.out.println("IntArrayList（不装箱）：" + (endTime2 - startTime2));
+
 
 
 
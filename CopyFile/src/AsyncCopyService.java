@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 异步复制服务
+ * 每个复制请求在单独的任务里执行，调用方立即拿到CompletableFuture<CopyResult>，不用为每个复制阻塞一个平台线程
+ * 运行在jdk21以上时使用虚拟线程（每个任务一个），否则退回到固定大小的平台线程池
+ *
+ * 背压：同时在复制中的字节数有上限，超过上限的请求在任务里等待，直到前面的复制完成释放额度，
+ * 所以突发大量请求时内存占用是有界的。单个文件比上限还大时按上限计算，也就是独占全部额度
+ * 等待用ReentrantLock的Condition而不是synchronized+wait：jdk21到23上虚拟线程在Object.wait里会钉住载体线程，
+ * 等待的任务多了会占满所有载体线程，持有额度的复制反而没有线程可用，无法释放额度
+ */
+public class AsyncCopyService implements AutoCloseable {
+
+    //默认在途字节上限1G
+    static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 1024L * 1024 * 1024;
+
+    private final ExecutorService executor;
+    private final CopyStrategy strategy;
+    private final long maxInFlightBytes;
+    //当前在途的字节数  由lock保护
+    private long inFlightBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    public AsyncCopyService() {
+        this(CopyStrategy.CHANNEL, DEFAULT_MAX_IN_FLIGHT_BYTES);
+    }
+
+    public AsyncCopyService(CopyStrategy strategy, long maxInFlightBytes) {
+        if (maxInFlightBytes <= 0)
+            throw new IllegalArgumentException("Illegal in-flight limit: " + maxInFlightBytes);
+        this.strategy = strategy;
+        this.maxInFlightBytes = maxInFlightBytes;
+        this.executor = newExecutor();
+    }
+
+    /**
+     * 提交一个复制请求
+     * 复制出错时future以CompletionException结束，cause是原始的IOException
+     */
+    public CompletableFuture<CopyResult> copy(Path source, Path target) {
+        return CompletableFuture.supplyAsync(() -> {
+            long permits;
+            try {
+                permits = Math.min(Math.max(Files.size(source), 1), maxInFlightBytes);
+                acquire(permits);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                return strategy.copy(source, target);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            } finally {
+                release(permits);
+            }
+        }, executor).exceptionally(e -> {
+            //统一把cause还原成IOException  方便调用方处理
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof UncheckedIOException)
+                cause = cause.getCause();
+            throw new CompletionException(cause);
+        });
+    }
+
+    //当前在途的字节数
+    public long getInFlightBytes() {
+        lock.lock();
+        try {
+            return inFlightBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMaxInFlightBytes() {
+        return maxInFlightBytes;
+    }
+
+    private void acquire(long bytes) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlightBytes + bytes > maxInFlightBytes)
+                released.await();
+            inFlightBytes += bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long bytes) {
+        lock.lock();
+        try {
+            inFlightBytes -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 不再接收新的请求，并等待已提交的复制完成
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                //继续等  复制中的大文件可能很久才结束
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * jdk21以上有Executors.newVirtualThreadPerTaskExecutor，通过反射调用以便在jdk8下也能编译运行
+     */
+    static ExecutorService newExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception e) {
+            //没有虚拟线程  复制主要在等IO，线程数取核数的4倍
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4);
+        }
+    }
+}
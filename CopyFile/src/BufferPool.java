@@ -0,0 +1,186 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 堆外直接缓冲区（DirectByteBuffer）池
+ * 高频复制时每次都新分配缓冲区会给GC很大压力，这里把用完的缓冲区回收起来反复使用，稳定运行后复制路径上不再分配内存
+ *
+ * 缓冲区按容量分级，每级都是2的幂（4K, 8K, ... 16M），申请时向上取到最近的一级
+ * 每个线程先在自己的ThreadLocal缓存里找（无竞争），找不到再去所有线程共享的队列里找，都没有才新分配
+ * 超过最大一级的申请不走池，直接分配，归还时直接释放
+ * 虚拟线程（比如AsyncCopyService的任务）每个任务一个，用完就结束，放进它的ThreadLocal缓存等于丢掉，所以虚拟线程上直接用共享队列
+ */
+public class BufferPool {
+
+    //最小一级4K
+    static final int MIN_SHIFT = 12;
+    //最大一级16M
+    static final int MAX_SHIFT = 24;
+    static final int CLASS_COUNT = MAX_SHIFT - MIN_SHIFT + 1;
+    //每个线程每一级最多缓存的缓冲区数
+    static final int THREAD_CACHE_SIZE = 2;
+    //共享队列每一级最多缓存的缓冲区数
+    static final int DEFAULT_SHARED_SIZE = 16;
+
+    private static final BufferPool SHARED = new BufferPool(DEFAULT_SHARED_SIZE);
+    //jdk21以上的Thread.isVirtual  更低的版本没有虚拟线程，为null
+    private static final MethodHandle IS_VIRTUAL = isVirtualHandle();
+
+    private final int sharedSize;
+    private final ConcurrentLinkedQueue<ByteBuffer>[] shared;
+    //ConcurrentLinkedQueue.size()是O(n)的，单独计数
+    private final AtomicInteger[] sharedCounts;
+    private final ThreadLocal<ArrayDeque<ByteBuffer>[]> threadCache;
+
+    //统计信息
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicLong outstandingBytes = new AtomicLong();
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public BufferPool(int sharedSize) {
+        if (sharedSize < 0)
+            throw new IllegalArgumentException("Illegal shared size: " + sharedSize);
+        this.sharedSize = sharedSize;
+        this.shared = new ConcurrentLinkedQueue[CLASS_COUNT];
+        this.sharedCounts = new AtomicInteger[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            shared[i] = new ConcurrentLinkedQueue<>();
+            sharedCounts[i] = new AtomicInteger();
+        }
+        this.threadCache = ThreadLocal.withInitial(() -> {
+            ArrayDeque<ByteBuffer>[] cache = new ArrayDeque[CLASS_COUNT];
+            for (int i = 0; i < CLASS_COUNT; i++)
+                cache[i] = new ArrayDeque<>(THREAD_CACHE_SIZE);
+            return cache;
+        });
+    }
+
+    //全局共享的池  复制引擎默认用这个
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * 借一个容量不小于size的缓冲区  返回时已经clear过
+     * 用完必须调用release归还
+     */
+    public ByteBuffer acquire(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("Illegal buffer size: " + size);
+        int index = classIndex(size);
+        ByteBuffer buffer = null;
+        if (index < CLASS_COUNT) {
+            if (!onVirtualThread())
+                buffer = threadCache.get()[index].pollFirst();
+            if (buffer == null && (buffer = shared[index].poll()) != null)
+                sharedCounts[index].decrementAndGet();
+        }
+        if (buffer != null) {
+            hits.increment();
+            buffer.clear();
+        } else {
+            misses.increment();
+            buffer = ByteBuffer.allocateDirect(index < CLASS_COUNT ? 1 << (index + MIN_SHIFT) : size);
+        }
+        outstandingBytes.addAndGet(buffer.capacity());
+        return buffer;
+    }
+
+    /**
+     * 归还缓冲区  先放回当前线程的缓存，满了放共享队列，再满了就释放掉
+     * 在虚拟线程上不经过线程缓存
+     */
+    public void release(ByteBuffer buffer) {
+        release(buffer, !onVirtualThread());
+    }
+
+    /**
+     * 归还到共享队列  不经过线程缓存
+     * 给只复制一次就结束的临时线程用（比如ParallelCopier的工作线程），否则缓冲区会随线程一起被丢掉
+     */
+    public void releaseToShared(ByteBuffer buffer) {
+        release(buffer, false);
+    }
+
+    private void release(ByteBuffer buffer, boolean threadLocal) {
+        if (buffer == null)
+            return;
+        int capacity = buffer.capacity();
+        outstandingBytes.addAndGet(-capacity);
+        int index = classIndex(capacity);
+        //不是池里分配出去的容量（比如超大缓冲区）不回收
+        if (index >= CLASS_COUNT || capacity != 1 << (index + MIN_SHIFT)) {
+            MappedCopier.unmap(buffer);
+            return;
+        }
+        if (threadLocal) {
+            ArrayDeque<ByteBuffer> local = threadCache.get()[index];
+            if (local.size() < THREAD_CACHE_SIZE) {
+                local.offerFirst(buffer);
+                return;
+            }
+        }
+        if (sharedCounts[index].incrementAndGet() <= sharedSize) {
+            shared[index].offer(buffer);
+            return;
+        }
+        sharedCounts[index].decrementAndGet();
+        MappedCopier.unmap(buffer);
+    }
+
+    static boolean onVirtualThread() {
+        if (IS_VIRTUAL == null)
+            return false;
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private static MethodHandle isVirtualHandle() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual",
+                    MethodType.methodType(boolean.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    //size对应的级别  大于最大一级时返回CLASS_COUNT
+    static int classIndex(int size) {
+        if (size > 1 << MAX_SHIFT)
+            return CLASS_COUNT;
+        //向上取到2的幂后求指数
+        int shift = 32 - Integer.numberOfLeadingZeros(size - 1);
+        return Math.max(shift, MIN_SHIFT) - MIN_SHIFT;
+    }
+
+    //从池里（线程缓存或共享队列）拿到缓冲区的次数
+    public long getHits() {
+        return hits.sum();
+    }
+
+    //池里没有、只能新分配的次数
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    //已借出还没归还的字节数
+    public long getOutstandingBytes() {
+        return outstandingBytes.get();
+    }
+
+    public String toString() {
+        return "BufferPool{hits=" + getHits() + ", misses=" + getMisses() +
+                ", outstandingBytes=" + getOutstandingBytes() + "}";
+    }
+}
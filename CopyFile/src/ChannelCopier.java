@@ -0,0 +1,59 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 基于NIO FileChannel.transferTo的复制引擎
+ * copyFile.Copy原来的做法是把文件读进一个byte数组再写出去，数据要经过用户空间拷贝一次，
+ * 而transferTo可以让内核直接在两个文件之间搬数据（linux下是sendfile/copy_file_range），不占用堆内存
+ *
+ * 注意transferTo一次调用不保证把count个字节全部传完（而且很多系统单次最多传2G左右），
+ * 所以必须按返回值循环调用，直到传完为止
+ */
+public class ChannelCopier {
+
+    //单次transferTo请求的最大字节数  超过2G的文件按这个大小分批传输
+    static final long MAX_TRANSFER_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * 把source完整复制到target，target已存在时会被截断覆盖
+     */
+    public static CopyResult copy(Path source, Path target) throws IOException {
+        long start = System.nanoTime();
+        long copied;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            copied = transfer(in, 0, in.size(), out, 0);
+        }
+        return new CopyResult(source.toString(), target.toString(), copied, System.nanoTime() - start);
+    }
+
+    /**
+     * 把in中从position开始的count个字节写到out的outPosition处
+     * 返回实际传输的字节数  源文件在复制过程中被截短时会比count少
+     */
+    static long transfer(FileChannel in, long position, long count,
+                         FileChannel out, long outPosition) throws IOException {
+        long done = 0;
+        while (done < count) {
+            long n = in.transferTo(position + done, Math.min(MAX_TRANSFER_SIZE, count - done),
+                    out.position(outPosition + done));
+            CopyMetrics.recordIoCall();
+            if (n <= 0) {
+                //transferTo返回0有两种情况：读到了文件末尾，或者这次没传成功
+                //读到末尾就结束，否则换transferFrom再试一次，还是0说明确实传不动了
+                if (position + done >= in.size())
+                    break;
+                n = out.transferFrom(in.position(position + done), outPosition + done,
+                        Math.min(MAX_TRANSFER_SIZE, count - done));
+                CopyMetrics.recordIoCall();
+                if (n <= 0)
+                    break;
+            }
+            done += n;
+        }
+        return done;
+    }
+}
@@ -0,0 +1,167 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Checksum;
+
+/**
+ * 边复制边计算校验值
+ * 原来复制完还要把目标文件整个再读一遍来校验，读IO翻倍。这里在字节流过的时候就算好CRC和SHA-256
+ *
+ * 计算放在单独的线程里，和读写形成流水线：
+ * 复制线程从空闲队列拿一个缓冲区 -> 读源文件 -> 写目标文件 -> 放进待校验队列
+ * 校验线程从待校验队列取出缓冲区 -> 更新CRC和SHA-256 -> 放回空闲队列
+ * 这样第n块在算哈希的同时第n+1块已经在读写了，哈希不会拖慢复制（除非哈希本身比磁盘还慢）
+ *
+ * 需要确认数据真正写到了盘上时，可以打开verify回读一次目标文件，这一步和普通的复制后校验一样要多读一遍
+ */
+public class ChecksumCopier {
+
+    //流水线中的缓冲区个数和大小
+    static final int PIPELINE_DEPTH = 4;
+    static final int BUFFER_SIZE = 1024 * 1024;
+
+    //校验线程  设为守护线程，不影响jvm退出
+    private static final ExecutorService HASHERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "copy-hasher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //放在待校验队列最后，通知校验线程结束
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    public static ChecksumResult copy(Path source, Path target) throws IOException {
+        return copy(source, target, false);
+    }
+
+    public static ChecksumResult copy(Path source, Path target, boolean verify) throws IOException {
+        long start = System.nanoTime();
+        BufferPool pool = BufferPool.shared();
+        BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(PIPELINE_DEPTH);
+        BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(PIPELINE_DEPTH + 1);
+        for (int i = 0; i < PIPELINE_DEPTH; i++)
+            free.add(pool.acquire(BUFFER_SIZE));
+
+        Digests digests = new Digests();
+        Future<?> hasher = HASHERS.submit(() -> {
+            ByteBuffer buffer;
+            while ((buffer = filled.take()) != END) {
+                //出错也要把缓冲区还回去，否则复制线程会一直等空闲缓冲区
+                if (digests.failure == null) {
+                    try {
+                        digests.update(buffer);
+                    } catch (RuntimeException e) {
+                        digests.failure = e;
+                    }
+                }
+                free.put(buffer);
+            }
+            return null;
+        });
+
+        long copied = 0;
+        try {
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (true) {
+                    ByteBuffer buffer = free.take();
+                    buffer.clear();
+                    int n;
+                    try {
+                        n = in.read(buffer);
+                        if (n >= 0) {
+                            buffer.flip();
+                            while (buffer.hasRemaining())
+                                out.write(buffer);
+                            buffer.flip();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        //读写出错时手里这块缓冲区还没交给校验线程  放回free，最后统一释放
+                        free.add(buffer);
+                        throw e;
+                    }
+                    if (n < 0) {
+                        free.put(buffer);
+                        break;
+                    }
+                    copied += n;
+                    filled.put(buffer);
+                }
+            } finally {
+                //无论成功与否都要让校验线程结束
+                filled.put(END);
+                hasher.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Copy interrupted: " + source, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Checksum failed: " + source, e.getCause());
+        } finally {
+            for (ByteBuffer buffer : free)
+                pool.release(buffer);
+        }
+        CopyResult result = new CopyResult(source.toString(), target.toString(), copied, System.nanoTime() - start);
+        if (digests.failure != null)
+            throw new IOException("Checksum failed: " + source, digests.failure);
+        long crc = digests.crc.getValue();
+        byte[] sha256 = digests.sha256.digest();
+
+        Boolean verified = null;
+        if (verify) {
+            Digests readBack = new Digests();
+            ByteBuffer buffer = pool.acquire(BUFFER_SIZE);
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.READ)) {
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    readBack.update(buffer);
+                    buffer.clear();
+                }
+            } finally {
+                pool.release(buffer);
+            }
+            verified = readBack.crc.getValue() == crc && MessageDigest.isEqual(readBack.sha256.digest(), sha256);
+        }
+        return new ChecksumResult(result, crc, Checksums.algorithm(), toHex(sha256), verified);
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return sb.toString();
+    }
+
+    //一次复制要算的所有校验值
+    static final class Digests {
+        final Checksum crc = Checksums.newChecksum();
+        final MessageDigest sha256;
+        //校验线程中出现的异常  由复制线程在结束后检查
+        volatile RuntimeException failure;
+
+        Digests() {
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                //每个jdk都必须支持SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void update(ByteBuffer buffer) {
+            Checksums.update(crc, buffer);
+            sha256.update(buffer.duplicate());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * 边复制边校验的结果
+ * 校验值是复制过程中对流过的字节计算的，verified只有在要求回读校验时才有意义
+ */
+public final class ChecksumResult {
+
+    private final CopyResult copyResult;
+    //CRC32C（jdk8下为CRC32），算法名见getCrcAlgorithm()
+    private final long crc;
+    private final String crcAlgorithm;
+    //SHA-256的十六进制字符串
+    private final String sha256;
+    //回读目标文件得到的校验值是否一致  没有回读时为null
+    private final Boolean verified;
+
+    ChecksumResult(CopyResult copyResult, long crc, String crcAlgorithm, String sha256, Boolean verified) {
+        this.copyResult = copyResult;
+        this.crc = crc;
+        this.crcAlgorithm = crcAlgorithm;
+        this.sha256 = sha256;
+        this.verified = verified;
+    }
+
+    public CopyResult getCopyResult() { return copyResult; }
+
+    public long getCrc() { return crc; }
+
+    public String getCrcAlgorithm() { return crcAlgorithm; }
+
+    public String getSha256() { return sha256; }
+
+    public Boolean getVerified() { return verified; }
+
+    public String toString() {
+        return copyResult + String.format(" %s=%08x sha256=%s", crcAlgorithm, crc, sha256) +
+                (verified == null ? "" : verified ? " verified" : " VERIFY FAILED");
+    }
+}
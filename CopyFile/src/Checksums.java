@@ -0,0 +1,76 @@
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * 校验和工具
+ * jdk9以上有硬件加速的CRC32C，jdk8只有CRC32，这里运行时判断，有CRC32C就用CRC32C
+ * 同一个文件的校验值必须用同一种算法比较，所以记录校验值的地方要同时记下算法名（见algorithm()）
+ */
+final class Checksums {
+
+    private static final Class<?> CRC32C = findCrc32c();
+    //jdk9以上Checksum接口才有update(ByteBuffer)  jdk8只有CRC32自己有
+    private static final Method UPDATE_BUFFER = findUpdateBuffer();
+
+    private Checksums() {
+    }
+
+    static Checksum newChecksum() {
+        if (CRC32C != null) {
+            try {
+                return (Checksum) CRC32C.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException ignored) {
+                //退回CRC32
+            }
+        }
+        return new CRC32();
+    }
+
+    static String algorithm() {
+        return CRC32C != null ? "CRC32C" : "CRC32";
+    }
+
+    /**
+     * 把buffer剩余的内容加入校验  不改变buffer的position
+     * 直接缓冲区也不用先拷贝到数组里
+     */
+    static void update(Checksum checksum, ByteBuffer buffer) {
+        ByteBuffer view = buffer.duplicate();
+        if (checksum instanceof CRC32) {
+            ((CRC32) checksum).update(view);
+            return;
+        }
+        if (UPDATE_BUFFER != null) {
+            try {
+                UPDATE_BUFFER.invoke(checksum, view);
+                return;
+            } catch (ReflectiveOperationException ignored) {
+                //退回到逐段拷贝
+            }
+        }
+        byte[] chunk = new byte[Math.min(view.remaining(), 8192)];
+        while (view.hasRemaining()) {
+            int n = Math.min(chunk.length, view.remaining());
+            view.get(chunk, 0, n);
+            checksum.update(chunk, 0, n);
+        }
+    }
+
+    private static Method findUpdateBuffer() {
+        try {
+            return Checksum.class.getMethod("update", ByteBuffer.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Class<?> findCrc32c() {
+        try {
+            return Class.forName("java.util.zip.CRC32C");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+}
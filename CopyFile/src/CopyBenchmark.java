@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * 复制策略的基准测试
+ * 在本地生成4K到8G的测试文件，对copyFile.Copy和每种CopyStrategy分别预热后测量多次，输出：
+ * 延迟的p50/p99、吞吐量、每次复制的IO调用次数、每次复制新分配的缓冲区数
+ *
+ * 用法：java CopyBenchmark [工作目录] [最大文件大小，如64M、8G] [每项测量次数]
+ * 默认最大只测到64M，测8G的文件需要足够的磁盘空间和时间
+ */
+public class CopyBenchmark {
+
+    static final long[] SIZES = {4L << 10, 64L << 10, 1L << 20, 16L << 20, 256L << 20, 1L << 30, 8L << 30};
+    static final int WARMUP = 3;
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"), "copy-benchmark");
+        long maxSize = parseSize(args.length > 1 ? args[1] : "64M");
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        Files.createDirectories(dir);
+
+        System.out.printf("%-16s %10s %12s %12s %10s %10s %10s%n",
+                "strategy", "size", "p50(us)", "p99(us)", "MB/s", "io/copy", "alloc/copy");
+        for (long size : SIZES) {
+            if (size > maxSize)
+                break;
+            Path source = generate(dir, size);
+            Path target = dir.resolve("target.bin");
+            //大文件少测几次
+            int runs = size >= (1L << 30) ? Math.min(iterations, 3) : iterations;
+            run("copyFile.Copy", source, dir, runs, (s, t) -> copyFile.Copy(s.toString(), dir.toString()));
+            for (CopyStrategy strategy : CopyStrategy.values())
+                run(strategy.name(), source, target, runs, strategy::copy);
+            Files.deleteIfExists(target);
+            Files.deleteIfExists(dir.resolve("复制版" + source.getFileName()));
+            Files.delete(source);
+        }
+    }
+
+    interface Copier {
+        CopyResult copy(Path source, Path target) throws IOException;
+    }
+
+    static void run(String name, Path source, Path target, int runs, Copier copier) throws IOException {
+        for (int i = 0; i < WARMUP; i++)
+            copier.copy(source, target);
+        LatencyHistogram latency = new LatencyHistogram();
+        long ioCalls = CopyMetrics.getIoCalls();
+        long allocations = BufferPool.shared().getMisses();
+        long bytes = 0;
+        long nanos = 0;
+        for (int i = 0; i < runs; i++) {
+            CopyResult result = copier.copy(source, target);
+            if (result == null)
+                throw new IOException(name + " failed on " + source);
+            latency.record(result.getNanos());
+            bytes += result.getBytes();
+            nanos += result.getNanos();
+        }
+        System.out.printf("%-16s %10s %12.1f %12.1f %10.1f %10.1f %10.2f%n",
+                name, formatSize(Files.size(source)),
+                latency.getPercentile(50) / 1000.0, latency.getPercentile(99) / 1000.0,
+                nanos == 0 ? 0 : bytes / (1024.0 * 1024.0) / (nanos / 1_000_000_000.0),
+                (CopyMetrics.getIoCalls() - ioCalls) / (double) runs,
+                (BufferPool.shared().getMisses() - allocations) / (double) runs);
+    }
+
+    //生成指定大小的随机内容文件  已存在且大小相同时直接复用
+    static Path generate(Path dir, long size) throws IOException {
+        Path file = dir.resolve("source-" + formatSize(size) + ".bin");
+        if (Files.exists(file) && Files.size(file) == size)
+            return file;
+        byte[] block = new byte[1024 * 1024];
+        new Random(size).nextBytes(block);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += block.length)
+                out.write(block, 0, (int) Math.min(block.length, size - written));
+        }
+        return file;
+    }
+
+    //"64M"、"8G"这样的大小  不带单位时按字节
+    static long parseSize(String size) {
+        String s = size.trim().toUpperCase();
+        int unit = "KMG".indexOf(s.charAt(s.length() - 1));
+        if (unit < 0)
+            return Long.parseLong(s);
+        return Long.parseLong(s.substring(0, s.length() - 1)) << (10 * (unit + 1));
+    }
+
+    static String formatSize(long size) {
+        if (size >= 1L << 30)
+            return (size >> 30) + "G";
+        if (size >= 1L << 20)
+            return (size >> 20) + "M";
+        return (size >> 10) + "K";
+    }
+}
@@ -0,0 +1,17 @@
+import java.io.IOException;
+
+/**
+ * 复制时使用的压缩算法
+ * 压缩和解压都以块为单位，块与块之间互不依赖，所以可以多线程并行处理
+ * 实现必须是线程安全的（同一个codec对象会被多个线程同时调用）
+ */
+public interface CopyCodec {
+
+    //写在压缩文件头里，解压时用来确认用的是同一种算法
+    String name();
+
+    byte[] compress(byte[] src, int off, int len);
+
+    //rawLength是压缩前的长度  数据损坏时抛出IOException
+    byte[] decompress(byte[] src, int off, int len, int rawLength) throws IOException;
+}
@@ -0,0 +1,70 @@
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 复制的运行时统计
+ * 每种CopyStrategy一份，通过CopyStrategy.metrics()取得，记录复制次数、字节数、耗时和延迟分布
+ * 另外全局统计复制引擎发起的IO调用次数（read/write/transferTo/map），
+ * 缓冲区的分配次数见BufferPool.shared()的hit/miss
+ */
+public class CopyMetrics {
+
+    private static final Map<CopyStrategy, CopyMetrics> BY_STRATEGY = new EnumMap<>(CopyStrategy.class);
+    //所有复制引擎发起的IO调用次数
+    private static final LongAdder IO_CALLS = new LongAdder();
+
+    static {
+        for (CopyStrategy strategy : CopyStrategy.values())
+            BY_STRATEGY.put(strategy, new CopyMetrics());
+    }
+
+    private final LongAdder copies = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    static CopyMetrics of(CopyStrategy strategy) {
+        return BY_STRATEGY.get(strategy);
+    }
+
+    //复制引擎每发起一次IO调用记一次
+    static void recordIoCall() {
+        IO_CALLS.increment();
+    }
+
+    public static long getIoCalls() {
+        return IO_CALLS.sum();
+    }
+
+    void record(CopyResult result) {
+        copies.increment();
+        bytes.add(result.getBytes());
+        nanos.add(result.getNanos());
+        latency.record(result.getNanos());
+    }
+
+    public long getCopies() {
+        return copies.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    //按累计的复制耗时计算  并发复制时不等于墙上时间的吞吐量
+    public double getBytesPerSecond() {
+        long total = nanos.sum();
+        return total == 0 ? 0 : bytes.sum() / (total / 1_000_000_000.0);
+    }
+
+    //每次复制耗时的分布（纳秒）
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public String toString() {
+        return String.format("copies=%d bytes=%d %.2f MB/s latency[%s]",
+                getCopies(), getBytes(), getBytesPerSecond() / (1024 * 1024), latency);
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * 一次复制的结果
+ * 记录复制的字节数和耗时，吞吐量由这两个值计算得出
+ */
+public final class CopyResult {
+
+    //源文件路径
+    private final String source;
+    //目标文件路径
+    private final String target;
+    //实际复制的字节数
+    private final long bytes;
+    //复制耗时（纳秒）
+    private final long nanos;
+
+    public CopyResult(String source, String target, long bytes, long nanos) {
+        this.source = source;
+        this.target = target;
+        this.bytes = bytes;
+        this.nanos = nanos;
+    }
+
+    public String getSource() { return source; }
+
+    public String getTarget() { return target; }
+
+    public long getBytes() { return bytes; }
+
+    public long getNanos() { return nanos; }
+
+    //吞吐量 单位MB/s  耗时为0时（空文件）返回0
+    public double getThroughputMBps() {
+        if (nanos <= 0)
+            return 0;
+        return (bytes / (1024.0 * 1024.0)) / (nanos / 1_000_000_000.0);
+    }
+
+    public String toString() {
+        return String.format("%s -> %s : %d bytes, %.3f ms, %.2f MB/s",
+                source, target, bytes, nanos / 1_000_000.0, getThroughputMBps());
+    }
+}
@@ -0,0 +1,47 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 复制策略
+ * STREAM  固定缓冲区的流式读写，最通用
+ * CHANNEL FileChannel.transferTo，由内核完成复制，大部分情况下最快
+ * MMAP    按窗口内存映射复制，适合特别大的文件
+ * PARALLEL 多线程分段复制，适合高速磁盘上的大文件
+ */
+public enum CopyStrategy {
+
+    STREAM {
+        CopyResult doCopy(Path source, Path target) throws IOException {
+            return StreamCopier.copy(source, target);
+        }
+    },
+    CHANNEL {
+        CopyResult doCopy(Path source, Path target) throws IOException {
+            return ChannelCopier.copy(source, target);
+        }
+    },
+    MMAP {
+        CopyResult doCopy(Path source, Path target) throws IOException {
+            return MappedCopier.copy(source, target);
+        }
+    },
+    PARALLEL {
+        CopyResult doCopy(Path source, Path target) throws IOException {
+            return ParallelCopier.copy(source, target);
+        }
+    };
+
+    //复制并记录到这个策略的统计里
+    public CopyResult copy(Path source, Path target) throws IOException {
+        CopyResult result = doCopy(source, target);
+        CopyMetrics.of(this).record(result);
+        return result;
+    }
+
+    //这个策略的运行时统计
+    public CopyMetrics metrics() {
+        return CopyMetrics.of(this);
+    }
+
+    abstract CopyResult doCopy(Path source, Path target) throws IOException;
+}
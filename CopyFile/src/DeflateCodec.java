@@ -0,0 +1,70 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 基于jdk自带Deflater/Inflater的压缩  压缩率高，速度较慢
+ * level取值同Deflater：1最快，9压缩率最高
+ */
+public class DeflateCodec implements CopyCodec {
+
+    private final int level;
+
+    public DeflateCodec() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public DeflateCodec(int level) {
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION)
+            throw new IllegalArgumentException("Illegal deflate level: " + level);
+        this.level = level;
+    }
+
+    public String name() {
+        return "deflate";
+    }
+
+    public byte[] compress(byte[] src, int off, int len) {
+        //Deflater持有堆外内存，用完必须end()
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(src, off, len);
+            deflater.finish();
+            //不可压缩的数据deflate后会比原来稍大一点
+            byte[] out = new byte[len + (len >> 8) + 64];
+            int n = 0;
+            while (!deflater.finished()) {
+                if (n == out.length)
+                    out = Arrays.copyOf(out, out.length * 2);
+                n += deflater.deflate(out, n, out.length - n);
+            }
+            return Arrays.copyOf(out, n);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public byte[] decompress(byte[] src, int off, int len, int rawLength) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(src, off, len);
+            byte[] out = new byte[rawLength];
+            int n = 0;
+            while (n < rawLength) {
+                int inflated = inflater.inflate(out, n, rawLength - n);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput()))
+                    break;
+                n += inflated;
+            }
+            if (n != rawLength)
+                throw new IOException("Corrupt deflate block: expected " + rawLength + " bytes, got " + n);
+            return out;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt deflate block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 增量复制  只重写和源文件不同的块
+ * 每晚的同步任务里目标文件和源文件往往95%都一样，全量重写既浪费写IO又磨损SSD
+ *
+ * 步骤：
+ * ①.目标文件不存在，直接全量复制
+ * ②.大小和修改时间都一样，认为没有变化，整个跳过
+ * ③.否则把两个文件按固定大小分块，多线程并发地逐块比较，只把不同的块写回目标文件，最后把目标截断到源文件大小
+ * 复制完把目标文件的修改时间设成和源文件一样，下次同步时第②步就能直接跳过
+ *
+ * 两边都是本地文件，每块都要读出来，直接比较字节比分别算哈希再比较更省CPU，所以这里不算哈希
+ */
+public class DeltaCopier {
+
+    //默认块大小1M
+    static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    public static DeltaResult copy(Path source, Path target) throws IOException {
+        return copy(source, target, DEFAULT_BLOCK_SIZE, ParallelCopier.DEFAULT_PARALLELISM);
+    }
+
+    public static DeltaResult copy(Path source, Path target, int blockSize, int parallelism) throws IOException {
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("Illegal block size: " + blockSize);
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("Illegal parallelism: " + parallelism);
+        long start = System.nanoTime();
+        long size = Files.size(source);
+        long blocks = (size + blockSize - 1) / blockSize;
+        FileTime modified = Files.getLastModifiedTime(source);
+
+        if (!Files.exists(target)) {
+            CopyResult result = ChannelCopier.copy(source, target);
+            Files.setLastModifiedTime(target, modified);
+            return new DeltaResult(result, blocks, blocks, result.getBytes(), false);
+        }
+        if (Files.size(target) == size && Files.getLastModifiedTime(target).equals(modified))
+            return new DeltaResult(new CopyResult(source.toString(), target.toString(), size,
+                    System.nanoTime() - start), blocks, 0, 0, true);
+
+        AtomicLong changed = new AtomicLong();
+        AtomicLong written = new AtomicLong();
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int threads = (int) Math.min(parallelism, Math.max(blocks, 1));
+            AtomicLong nextBlock = new AtomicLong();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>(threads);
+                for (int i = 0; i < threads; i++)
+                    futures.add(executor.submit(() -> {
+                        BufferPool pool = BufferPool.shared();
+                        ByteBuffer src = pool.acquire(blockSize);
+                        ByteBuffer dst = pool.acquire(blockSize);
+                        try {
+                            long block;
+                            while ((block = nextBlock.getAndIncrement()) < blocks) {
+                                long position = block * blockSize;
+                                int length = (int) Math.min(blockSize, size - position);
+                                readFully(in, src, position, length);
+                                readFully(out, dst, position, length);
+                                //ByteBuffer.equals比较的是position到limit之间的内容
+                                if (!src.equals(dst)) {
+                                    long writePosition = position;
+                                    while (src.hasRemaining())
+                                        writePosition += out.write(src, writePosition);
+                                    changed.incrementAndGet();
+                                    written.addAndGet(length);
+                                }
+                            }
+                        } finally {
+                            pool.releaseToShared(src);
+                            pool.releaseToShared(dst);
+                        }
+                        return null;
+                    }));
+                for (Future<?> future : futures)
+                    future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Delta copy interrupted: " + source, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                throw new IOException("Delta copy failed: " + source, e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+            //目标比源文件长时去掉多出来的部分
+            if (out.size() > size)
+                out.truncate(size);
+        }
+        Files.setLastModifiedTime(target, modified);
+        return new DeltaResult(new CopyResult(source.toString(), target.toString(), size, System.nanoTime() - start),
+                blocks, changed.get(), written.get(), false);
+    }
+
+    /**
+     * 从position开始读length个字节到buffer，读完后buffer处于可读状态（position=0, limit=读到的字节数）
+     * 目标文件比源文件短时读不满，没读到的部分自然和源文件不同
+     */
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0)
+                break;
+        }
+        buffer.flip();
+    }
+}
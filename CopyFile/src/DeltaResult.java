@@ -0,0 +1,40 @@
+/**
+ * 增量复制的结果
+ * 除了普通的复制结果外，还记录比较了多少块、实际重写了多少块
+ */
+public final class DeltaResult {
+
+    private final CopyResult copyResult;
+    //源文件按块划分后的总块数
+    private final long totalBlocks;
+    //内容不同、被重写的块数
+    private final long changedBlocks;
+    //实际写入目标文件的字节数
+    private final long bytesWritten;
+    //大小和修改时间都一致，整个文件被跳过
+    private final boolean skipped;
+
+    DeltaResult(CopyResult copyResult, long totalBlocks, long changedBlocks, long bytesWritten, boolean skipped) {
+        this.copyResult = copyResult;
+        this.totalBlocks = totalBlocks;
+        this.changedBlocks = changedBlocks;
+        this.bytesWritten = bytesWritten;
+        this.skipped = skipped;
+    }
+
+    //getBytes()是源文件的大小，写入量见getBytesWritten()
+    public CopyResult getCopyResult() { return copyResult; }
+
+    public long getTotalBlocks() { return totalBlocks; }
+
+    public long getChangedBlocks() { return changedBlocks; }
+
+    public long getBytesWritten() { return bytesWritten; }
+
+    public boolean isSkipped() { return skipped; }
+
+    public String toString() {
+        return copyResult + (skipped ? " (skipped, unchanged)" :
+                String.format(" (%d/%d blocks rewritten, %d bytes written)", changedBlocks, totalBlocks, bytesWritten));
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延迟直方图  思路同HdrHistogram：按2的幂分成若干大桶，每个大桶再线性地分成16个小桶
+ * 这样任何数值的相对误差都在1/16（约6%）以内，而桶的总数是固定的（64*16个long），记录是O(1)且不分配内存
+ * 可以多线程同时记录
+ */
+public class LatencyHistogram {
+
+    //每个大桶分成2^4=16个小桶
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    //记录一个值（一般是纳秒），负数按0处理
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        counts.incrementAndGet(indexOf(value));
+        total.increment();
+        sum.add(value);
+    }
+
+    public long getCount() {
+        return total.sum();
+    }
+
+    public double getMean() {
+        long count = total.sum();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * 返回百分位数  percentile取0到100，比如99.9
+     * 返回的是所在小桶的上界，所以结果只会偏大不会偏小
+     */
+    public long getPercentile(double percentile) {
+        long count = total.sum();
+        if (count == 0)
+            return 0;
+        long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * count);
+        rank = Math.max(rank, 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return upperBoundOf(i);
+        }
+        return upperBoundOf(BUCKETS - 1);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+        total.reset();
+        sum.reset();
+    }
+
+    /**
+     * 小于16的值直接对应前16个桶
+     * 其余的值：最高位的位置决定大桶，最高位之后的4位决定小桶，
+     * 比如16~31每个值一个桶，32~63每2个值一个桶，64~127每4个值一个桶，以此类推
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+        long upper = ((sub + 1) << shift) - 1;
+        //最后一个桶的上界会溢出
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+
+    public String toString() {
+        return String.format("count=%d mean=%.0f p50=%d p99=%d p99.9=%d max<=%d",
+                getCount(), getMean(), getPercentile(50), getPercentile(99),
+                getPercentile(99.9), getPercentile(100));
+    }
+}
@@ -0,0 +1,167 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 纯java实现的LZ4块格式压缩  压缩率不如deflate，但快很多，适合瓶颈在写入字节数而不是CPU的场景
+ *
+ * 块由若干个序列组成，每个序列：
+ * token(1字节，高4位字面量长度，低4位匹配长度-4) [字面量长度扩展] 字面量 offset(2字节小端) [匹配长度扩展]
+ * 长度字段等于15时后面跟扩展字节，每个扩展字节累加，直到遇到不等于255的字节为止
+ * 最后一个序列只有字面量，没有offset；按LZ4的规定最后5个字节必须是字面量，最后一个匹配必须在结尾12字节之前开始
+ *
+ * 查找匹配用的是4字节的哈希表，只记每个哈希值最近出现的位置，不回溯，所以速度快
+ * 和LZ4一样，连续找不到匹配时步长逐渐变大，不可压缩的数据能很快跳过
+ */
+public class Lz4Codec implements CopyCodec {
+
+    static final int MIN_MATCH = 4;
+    //最后一个匹配开始的位置距结尾至少12字节
+    static final int MF_LIMIT = 12;
+    //最后5个字节必须是字面量
+    static final int LAST_LITERALS = 5;
+    static final int MAX_OFFSET = 65535;
+    static final int HASH_LOG = 16;
+    static final int SKIP_STRENGTH = 6;
+
+    //哈希表每个线程一份  里面存的是位置+1，0表示空
+    private static final ThreadLocal<int[]> TABLES = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+    public String name() {
+        return "lz4";
+    }
+
+    public byte[] compress(byte[] src, int off, int len) {
+        byte[] dst = new byte[len + len / 255 + 16];
+        int[] table = TABLES.get();
+        Arrays.fill(table, 0);
+        int end = off + len;
+        int anchor = off;
+        int op = 0;
+        if (len > MF_LIMIT) {
+            int mfLimit = end - MF_LIMIT;
+            int matchLimit = end - LAST_LITERALS;
+            int ip = off;
+            //连续没找到匹配的次数  每64次步长加1
+            int misses = 1 << SKIP_STRENGTH;
+            while (ip < mfLimit) {
+                int sequence = readInt(src, ip);
+                int h = hash(sequence);
+                int ref = table[h] - 1;
+                table[h] = ip + 1;
+                if (ref < off || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                    ip += misses++ >>> SKIP_STRENGTH;
+                    continue;
+                }
+                misses = 1 << SKIP_STRENGTH;
+                //向前扩展匹配
+                while (ip > anchor && ref > off && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                //向后扩展匹配
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ip + matchLength] == src[ref + matchLength])
+                    matchLength++;
+                op = writeSequence(dst, op, src, anchor, ip - anchor, ip - ref, matchLength);
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+        //剩下的全部作为最后一个序列的字面量
+        op = writeSequence(dst, op, src, anchor, end - anchor, 0, 0);
+        return Arrays.copyOf(dst, op);
+    }
+
+    public byte[] decompress(byte[] src, int off, int len, int rawLength) throws IOException {
+        byte[] dst = new byte[rawLength];
+        int ip = off;
+        int end = off + len;
+        int op = 0;
+        try {
+            while (true) {
+                int token = src[ip++] & 0xFF;
+                int literalLength = token >>> 4;
+                if (literalLength == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literalLength += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, ip, dst, op, literalLength);
+                ip += literalLength;
+                op += literalLength;
+                if (ip >= end)
+                    break;
+                int offset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+                ip += 2;
+                int matchLength = token & 0x0F;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                int ref = op - offset;
+                if (offset == 0 || ref < 0)
+                    throw new IOException("Corrupt lz4 block: bad offset " + offset);
+                //匹配区域可能和正在写的区域重叠（比如连续重复的字节），只能逐字节复制
+                for (int i = 0; i < matchLength; i++)
+                    dst[op + i] = dst[ref + i];
+                op += matchLength;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt lz4 block", e);
+        }
+        if (op != rawLength)
+            throw new IOException("Corrupt lz4 block: expected " + rawLength + " bytes, got " + op);
+        return dst;
+    }
+
+    //matchLength为0表示最后一个只有字面量的序列
+    private static int writeSequence(byte[] dst, int op, byte[] src, int literalStart, int literalLength,
+                                     int offset, int matchLength) {
+        int tokenPos = op++;
+        int token = 0;
+        if (literalLength >= 15) {
+            token = 15 << 4;
+            op = writeLength(dst, op, literalLength - 15);
+        } else {
+            token = literalLength << 4;
+        }
+        System.arraycopy(src, literalStart, dst, op, literalLength);
+        op += literalLength;
+        if (matchLength > 0) {
+            dst[op++] = (byte) offset;
+            dst[op++] = (byte) (offset >>> 8);
+            int ml = matchLength - MIN_MATCH;
+            if (ml >= 15) {
+                token |= 15;
+                op = writeLength(dst, op, ml - 15);
+            } else {
+                token |= ml;
+            }
+        }
+        dst[tokenPos] = (byte) token;
+        return op;
+    }
+
+    private static int writeLength(byte[] dst, int op, int length) {
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
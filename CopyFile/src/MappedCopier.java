@@ -0,0 +1,80 @@
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 内存映射复制  适合几个G以上的大文件
+ * 把源文件和目标文件按窗口（默认256M）分段映射成MappedByteBuffer，一段一段地复制，
+ * 复制完一段就释放这段映射再映射下一段，这样既不用在堆上开数组，也省掉了每次read/write的系统调用
+ *
+ * 一个MappedByteBuffer最大只能映射Integer.MAX_VALUE个字节，所以窗口也不能超过这个值
+ */
+public class MappedCopier {
+
+    //默认映射窗口256M
+    static final long DEFAULT_WINDOW_SIZE = 256L * 1024 * 1024;
+
+    public static CopyResult copy(Path source, Path target) throws IOException {
+        return copy(source, target, DEFAULT_WINDOW_SIZE);
+    }
+
+    public static CopyResult copy(Path source, Path target, long windowSize) throws IOException {
+        if (windowSize <= 0 || windowSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Illegal window size: " + windowSize);
+        long start = System.nanoTime();
+        long size;
+        //目标文件要以READ+WRITE打开  READ_WRITE模式的映射要求通道可读可写
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            size = in.size();
+            for (long position = 0; position < size; position += windowSize) {
+                long length = Math.min(windowSize, size - position);
+                MappedByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+                //映射超出文件末尾的区域时，文件会被自动扩展到对应长度
+                MappedByteBuffer dst = out.map(FileChannel.MapMode.READ_WRITE, position, length);
+                CopyMetrics.recordIoCall();
+                CopyMetrics.recordIoCall();
+                dst.put(src);
+                unmap(src);
+                unmap(dst);
+            }
+        }
+        return new CopyResult(source.toString(), target.toString(), size, System.nanoTime() - start);
+    }
+
+    /**
+     * 释放映射
+     * jdk没有公开unmap的方法，映射要等到buffer被GC时才会释放，大文件复制时会累积大量虚拟内存，
+     * 所以这里通过反射主动调用cleaner：jdk9以上用Unsafe.invokeCleaner，jdk8用DirectBuffer.cleaner().clean()
+     * 两种都失败时什么也不做，交给GC回收
+     */
+    static void unmap(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect())
+            return;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+        } catch (Exception ignored) {
+            //不是jdk9以上，继续尝试jdk8的方式
+        }
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null)
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+        } catch (Exception ignored) {
+            //交给GC
+        }
+    }
+}
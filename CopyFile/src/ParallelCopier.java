@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多线程分段复制
+ * 单线程复制一个文件时NVMe盘的带宽用不满，这里把文件切成固定大小的块（chunk），
+ * 由多个线程并发地用带位置的read(buf, pos)/write(buf, pos)复制，互不干扰
+ *
+ * 带位置的读写不会修改通道自身的position，所以多个线程可以共用同一对FileChannel
+ * 目标文件先扩展到和源文件一样大，各线程再往自己负责的区域写
+ */
+public class ParallelCopier {
+
+    //默认块大小8M
+    static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    //每个线程的读写缓冲区大小
+    static final int BUFFER_SIZE = 1024 * 1024;
+    //默认并发数  等于cpu核数
+    static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    public static CopyResult copy(Path source, Path target) throws IOException {
+        return copy(source, target, DEFAULT_PARALLELISM, DEFAULT_CHUNK_SIZE);
+    }
+
+    public static CopyResult copy(Path source, Path target, int parallelism, int chunkSize) throws IOException {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("Illegal parallelism: " + parallelism);
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Illegal chunk size: " + chunkSize);
+        long start = System.nanoTime();
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            if (size > 0)
+                //在最后一个字节处写一个0，把目标文件一次性扩展到最终大小
+                out.write(ByteBuffer.allocate(1), size - 1);
+            long chunks = (size + chunkSize - 1) / chunkSize;
+            //线程数不超过块数  小文件不必开满线程
+            int threads = (int) Math.min(parallelism, Math.max(chunks, 1));
+            //下一个待复制的块  线程复制完一块后再来领取下一块，快的线程多干活
+            AtomicLong nextChunk = new AtomicLong();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<Long>> futures = new ArrayList<>(threads);
+                for (int i = 0; i < threads; i++)
+                    futures.add(executor.submit(() -> {
+                        BufferPool pool = BufferPool.shared();
+                        ByteBuffer buffer = pool.acquire(Math.min(BUFFER_SIZE, chunkSize));
+                        try {
+                            long copied = 0;
+                            long chunk;
+                            while ((chunk = nextChunk.getAndIncrement()) < chunks) {
+                                long from = chunk * chunkSize;
+                                copied += copyRange(in, out, from, Math.min(from + chunkSize, size), buffer);
+                            }
+                            return copied;
+                        } finally {
+                            pool.releaseToShared(buffer);
+                        }
+                    }));
+                long copied = 0;
+                for (Future<Long> future : futures)
+                    copied += future.get();
+                return new CopyResult(source.toString(), target.toString(), copied, System.nanoTime() - start);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Copy interrupted: " + source, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                throw new IOException("Copy failed: " + source, e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    //复制[from, to)这一段  read/write都可能只处理了一部分，要按返回值循环
+    static long copyRange(FileChannel in, FileChannel out, long from, long to, ByteBuffer buffer) throws IOException {
+        long position = from;
+        while (position < to) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), to - position));
+            int n = in.read(buffer, position);
+            CopyMetrics.recordIoCall();
+            if (n < 0)
+                break;
+            buffer.flip();
+            long writePosition = position;
+            while (buffer.hasRemaining()) {
+                writePosition += out.write(buffer, writePosition);
+                CopyMetrics.recordIoCall();
+            }
+            position += n;
+        }
+        return position - from;
+    }
+}
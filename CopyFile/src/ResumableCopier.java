@@ -0,0 +1,151 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Checksum;
+
+/**
+ * 可断点续传的复制
+ * 几百G的文件复制到一半进程挂了，原来只能从头再来。这里复制时先写到"目标.part"临时文件，
+ * 并在旁边维护一个很小的日志文件"目标.journal"，记录已经落盘的块和每块的校验值，重启后从最后一个校验通过的块接着复制
+ * 全部复制完后把.part原子地rename成目标文件，读者永远看不到写了一半的文件
+ *
+ * 日志文件格式：
+ * 头部  magic(int) 源文件大小(long) 源文件修改时间(long) 块大小(int) 校验算法名(short长度+UTF-8字节)
+ * 之后  每个已完成的块一个int校验值，按块顺序追加
+ *
+ * 写入顺序保证日志里记录的块一定已经落盘：先force数据文件，再追加日志并force日志
+ * 每checkpointBlocks块做一次这样的检查点，检查点之间崩溃最多丢掉这一段的进度
+ */
+public class ResumableCopier {
+
+    static final int MAGIC = 0x434A524E;
+    //默认块大小4M
+    static final int DEFAULT_BLOCK_SIZE = 4 * 1024 * 1024;
+    //默认每64块（256M）做一次检查点
+    static final int DEFAULT_CHECKPOINT_BLOCKS = 64;
+
+    public static CopyResult copy(Path source, Path target) throws IOException {
+        return copy(source, target, DEFAULT_BLOCK_SIZE, DEFAULT_CHECKPOINT_BLOCKS);
+    }
+
+    /**
+     * 返回的CopyResult中bytes是本次实际复制的字节数，从日志恢复的部分不计入
+     */
+    public static CopyResult copy(Path source, Path target, int blockSize, int checkpointBlocks) throws IOException {
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("Illegal block size: " + blockSize);
+        if (checkpointBlocks <= 0)
+            throw new IllegalArgumentException("Illegal checkpoint interval: " + checkpointBlocks);
+        long start = System.nanoTime();
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        Path journalPath = target.resolveSibling(target.getFileName() + ".journal");
+        long size = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+        long blocks = (size + blockSize - 1) / blockSize;
+
+        BufferPool pool = BufferPool.shared();
+        ByteBuffer buffer = pool.acquire(blockSize);
+        long copied = 0;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileChannel journal = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = header(size, modified, blockSize);
+            long block = recover(journal, header, out, buffer, blockSize, size);
+            if (block == 0) {
+                //没有可用的进度  重新开始
+                journal.truncate(0);
+                out.truncate(0);
+                //按位置写不会移动通道的position  用header已写出的字节数作为文件偏移
+                while (header.hasRemaining())
+                    journal.write(header, header.position());
+                journal.force(true);
+            }
+            //校验没通过的记录丢掉  从这里接着追加
+            journal.truncate(header.capacity() + block * 4);
+            journal.position(header.capacity() + block * 4);
+
+            ByteBuffer pending = ByteBuffer.allocate(checkpointBlocks * 4);
+            for (; block < blocks; block++) {
+                long position = block * blockSize;
+                int length = (int) Math.min(blockSize, size - position);
+                DeltaCopier.readFully(in, buffer, position, length);
+                if (buffer.remaining() != length)
+                    throw new IOException("Source changed during copy: " + source);
+                pending.putInt(checksum(buffer));
+                long writePosition = position;
+                while (buffer.hasRemaining())
+                    writePosition += out.write(buffer, writePosition);
+                copied += length;
+                if (!pending.hasRemaining() || block == blocks - 1) {
+                    //检查点：数据先落盘，再记日志
+                    out.force(false);
+                    pending.flip();
+                    while (pending.hasRemaining())
+                        journal.write(pending);
+                    journal.force(false);
+                    pending.clear();
+                }
+            }
+            //.part可能是上一次留下的更长的文件
+            if (out.size() > size)
+                out.truncate(size);
+            out.force(true);
+        } finally {
+            pool.release(buffer);
+        }
+        Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(journalPath);
+        return new CopyResult(source.toString(), target.toString(), copied, System.nanoTime() - start);
+    }
+
+    /**
+     * 从日志恢复进度，返回可以开始复制的块号
+     * 日志头和当前的源文件、块大小、校验算法对不上时返回0（源文件变了，旧进度作废）
+     * 对日志里记录的最后一块做校验，不通过就往前退，直到找到校验通过的块
+     */
+    static long recover(FileChannel journal, ByteBuffer header, FileChannel out, ByteBuffer buffer,
+                        int blockSize, long size) throws IOException {
+        long journalSize = journal.size();
+        if (journalSize < header.capacity())
+            return 0;
+        ByteBuffer existing = ByteBuffer.allocate(header.capacity());
+        DeltaCopier.readFully(journal, existing, 0, header.capacity());
+        if (!existing.equals(header))
+            return 0;
+        //最后一条记录可能只写了一半，舍去
+        long recorded = (journalSize - header.capacity()) / 4;
+        ByteBuffer crc = ByteBuffer.allocate(4);
+        for (long block = recorded; block > 0; block--) {
+            long position = (block - 1) * blockSize;
+            int length = (int) Math.min(blockSize, size - position);
+            DeltaCopier.readFully(journal, crc, header.capacity() + (block - 1) * 4, 4);
+            DeltaCopier.readFully(out, buffer, position, length);
+            if (crc.remaining() == 4 && buffer.remaining() == length && crc.getInt() == checksum(buffer))
+                return block;
+        }
+        return 0;
+    }
+
+    static ByteBuffer header(long size, long modified, int blockSize) {
+        byte[] algorithm = Checksums.algorithm().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(4 + 8 + 8 + 4 + 2 + algorithm.length);
+        header.putInt(MAGIC).putLong(size).putLong(modified).putInt(blockSize)
+                .putShort((short) algorithm.length).put(algorithm);
+        header.flip();
+        return header;
+    }
+
+    //计算buffer剩余内容的校验值  不改变buffer的position
+    static int checksum(ByteBuffer buffer) {
+        Checksum checksum = Checksums.newChecksum();
+        Checksums.update(checksum, buffer);
+        return (int) checksum.getValue();
+    }
+}
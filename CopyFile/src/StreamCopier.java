@@ -0,0 +1,58 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 流式复制  也就是copyFile.Copy最早的写法：循环读一块、写一块
+ * 区别在于缓冲区是固定大小的，循环读写时按read的返回值写出，不会再按文件大小分配数组
+ * 缓冲区从BufferPool借用堆外内存，读写时少一次堆内外之间的拷贝，复制路径上也不再分配内存
+ */
+public class StreamCopier {
+
+    //默认缓冲区大小64K
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    public static CopyResult copy(Path source, Path target) throws IOException {
+        return copy(source, target, DEFAULT_BUFFER_SIZE);
+    }
+
+    public static CopyResult copy(Path source, Path target, int bufferSize) throws IOException {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("Illegal buffer size: " + bufferSize);
+        BufferPool pool = BufferPool.shared();
+        ByteBuffer buffer = pool.acquire(bufferSize);
+        try {
+            return copy(source, target, buffer);
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    //由调用方提供缓冲区  连续复制很多小文件时可以反复使用同一个缓冲区
+    static CopyResult copy(Path source, Path target, ByteBuffer buffer) throws IOException {
+        long start = System.nanoTime();
+        long copied = 0;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.clear();
+            int len;
+            //read返回的是实际读到的字节数  只写出这么多
+            while ((len = in.read(buffer)) != -1) {
+                CopyMetrics.recordIoCall();
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                    CopyMetrics.recordIoCall();
+                }
+                buffer.clear();
+                copied += len;
+            }
+            //最后一次返回-1的read
+            CopyMetrics.recordIoCall();
+        }
+        return new CopyResult(source.toString(), target.toString(), copied, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,156 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * 整个目录树的批量复制
+ * 对几百万个小文件逐个调用copyFile.Copy时，时间几乎都花在每个文件的打开、分配缓冲区、关闭上，
+ * 这里用Files.walkFileTree遍历目录，把文件交给ForkJoinPool（工作窃取）并发复制：
+ * 小文件攒成一批作为一个任务，同一批共用一个缓冲区；大文件单独成为一个任务，用transferTo复制
+ *
+ * 目录在遍历时就按顺序建好，所以任务执行时父目录一定已经存在
+ */
+public class TreeCopier {
+
+    //小于这个大小的文件算作小文件  默认1M
+    static final long DEFAULT_SMALL_FILE_SIZE = 1024 * 1024;
+    //一批小文件最多包含的文件数
+    static final int DEFAULT_BATCH_FILES = 256;
+    //一批小文件的总大小上限  默认8M
+    static final long DEFAULT_BATCH_BYTES = 8L * 1024 * 1024;
+
+    private final ForkJoinPool pool;
+    private final long smallFileSize;
+    private final int batchFiles;
+    private final long batchBytes;
+
+    public TreeCopier() {
+        this(ForkJoinPool.commonPool(), DEFAULT_SMALL_FILE_SIZE, DEFAULT_BATCH_FILES, DEFAULT_BATCH_BYTES);
+    }
+
+    public TreeCopier(ForkJoinPool pool, long smallFileSize, int batchFiles, long batchBytes) {
+        if (smallFileSize < 0 || batchFiles <= 0 || batchBytes <= 0)
+            throw new IllegalArgumentException("Illegal batch settings: " +
+                    smallFileSize + ", " + batchFiles + ", " + batchBytes);
+        this.pool = pool;
+        this.smallFileSize = smallFileSize;
+        this.batchFiles = batchFiles;
+        this.batchBytes = batchBytes;
+    }
+
+    /**
+     * 把sourceDir下的所有内容复制到targetDir下（targetDir不存在时会被创建）
+     * 单个文件复制失败不会中断整个过程，失败的文件记录在报告里
+     */
+    public TreeCopyReport copy(Path sourceDir, Path targetDir) throws IOException {
+        if (!Files.isDirectory(sourceDir))
+            throw new NotDirectoryException(sourceDir.toString());
+        long start = System.nanoTime();
+        Queue<CopyResult> results = new ConcurrentLinkedQueue<>();
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+        try {
+            Files.walkFileTree(sourceDir, new SimpleFileVisitor<Path>() {
+                //当前正在攒的一批小文件
+                List<Path> batch = new ArrayList<>();
+                long batchSize;
+
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    try {
+                        Files.createDirectories(targetDir.resolve(sourceDir.relativize(dir)));
+                    } catch (IOException e) {
+                        //目标目录建不出来  这个目录下的文件都复制不了，记下来跳过，其它目录照常复制
+                        failures.add(dir + ": " + e);
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (!attrs.isRegularFile())
+                        return FileVisitResult.CONTINUE;
+                    if (attrs.size() >= smallFileSize) {
+                        tasks.add(pool.submit(() -> copyLarge(file)));
+                        return FileVisitResult.CONTINUE;
+                    }
+                    batch.add(file);
+                    batchSize += attrs.size();
+                    if (batch.size() >= batchFiles || batchSize >= batchBytes)
+                        flush();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    failures.add(file + ": " + e);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                    if (e != null)
+                        failures.add(dir + ": " + e);
+                    //遍历到根目录结束时把最后一批交出去
+                    if (dir.equals(sourceDir))
+                        flush();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                void flush() {
+                    if (batch.isEmpty())
+                        return;
+                    List<Path> files = batch;
+                    batch = new ArrayList<>();
+                    batchSize = 0;
+                    tasks.add(pool.submit(() -> copySmall(files)));
+                }
+
+                void copyLarge(Path file) {
+                    Path target = targetDir.resolve(sourceDir.relativize(file));
+                    try {
+                        results.add(ChannelCopier.copy(file, target));
+                    } catch (IOException e) {
+                        failures.add(file + ": " + e);
+                    }
+                }
+
+                void copySmall(List<Path> files) {
+                    //一批文件共用一个缓冲区
+                    BufferPool bufferPool = BufferPool.shared();
+                    ByteBuffer buffer = bufferPool.acquire(
+                            (int) Math.max(Math.min(smallFileSize, StreamCopier.DEFAULT_BUFFER_SIZE), 1));
+                    try {
+                        for (Path file : files) {
+                            Path target = targetDir.resolve(sourceDir.relativize(file));
+                            try {
+                                results.add(StreamCopier.copy(file, target, buffer));
+                            } catch (IOException e) {
+                                failures.add(file + ": " + e);
+                            }
+                        }
+                    } finally {
+                        bufferPool.release(buffer);
+                    }
+                }
+            });
+        } finally {
+            //遍历中途抛出异常时也要等已提交的任务结束，不能让它们在copy返回之后还在写
+            for (ForkJoinTask<?> task : tasks)
+                task.quietlyJoin();
+        }
+        //任务里没被捕获的异常在这里抛出
+        for (ForkJoinTask<?> task : tasks)
+            task.join();
+        return new TreeCopyReport(new ArrayList<>(results), new ArrayList<>(failures), System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 目录树复制的报告
+ * 包含每个文件的复制结果（单个文件的吞吐量见CopyResult）和整体的吞吐量
+ */
+public final class TreeCopyReport {
+
+    //每个文件的复制结果  顺序和完成顺序一致，不是遍历顺序
+    private final List<CopyResult> results;
+    //复制失败的文件及原因
+    private final List<String> failures;
+    //整个目录树复制的耗时（纳秒）
+    private final long nanos;
+    private final long totalBytes;
+
+    TreeCopyReport(List<CopyResult> results, List<String> failures, long nanos) {
+        this.results = Collections.unmodifiableList(results);
+        this.failures = Collections.unmodifiableList(failures);
+        this.nanos = nanos;
+        long total = 0;
+        for (CopyResult result : results)
+            total += result.getBytes();
+        this.totalBytes = total;
+    }
+
+    public List<CopyResult> getResults() { return results; }
+
+    public List<String> getFailures() { return failures; }
+
+    public long getNanos() { return nanos; }
+
+    public long getTotalBytes() { return totalBytes; }
+
+    public int getFileCount() { return results.size(); }
+
+    //整体吞吐量 MB/s  按总字节数除以总耗时计算
+    public double getThroughputMBps() {
+        if (nanos <= 0)
+            return 0;
+        return (totalBytes / (1024.0 * 1024.0)) / (nanos / 1_000_000_000.0);
+    }
+
+    //每秒复制的文件数  小文件多的时候比MB/s更能说明问题
+    public double getFilesPerSecond() {
+        if (nanos <= 0)
+            return 0;
+        return results.size() / (nanos / 1_000_000_000.0);
+    }
+
+    public String toString() {
+        return String.format("%d files, %d bytes, %d failures, %.3f ms, %.2f MB/s, %.0f files/s",
+                results.size(), totalBytes, failures.size(), nanos / 1_000_000.0,
+                getThroughputMBps(), getFilesPerSecond());
+    }
+}
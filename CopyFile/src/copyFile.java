@@ -1,41 +1,28 @@
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 
 public class copyFile {
 
-    public static void Copy(String fileAddress  , String pasteAddress){
+    /**
+     * 复制文件到pasteAddress目录下，文件名前加上"复制版"
+     * 原来是把整个文件读进byte[1024*len]再写出，文件稍大就会撑爆堆内存，
+     * 现在交给ChannelCopier用transferTo复制，内存占用和文件大小无关
+     * 返回复制的字节数和吞吐量，出错时返回null
+     */
+    public static CopyResult Copy(String fileAddress  , String pasteAddress){
+        return Copy(fileAddress, pasteAddress, CopyStrategy.CHANNEL);
+    }
+
+    //指定复制策略  见CopyStrategy
+    public static CopyResult Copy(String fileAddress, String pasteAddress, CopyStrategy strategy){
         File file = new File(fileAddress);
-        FileInputStream fileInputStream = null;
-        FileOutputStream fileOutputStream = null;
+        File target = new File(pasteAddress, "复制版" + file.getName());
         try {
-            fileInputStream = new FileInputStream(file);
-            fileOutputStream = new FileOutputStream(pasteAddress+"//复制版"+file.getName());
-            int len = (int) file.length();
-            byte[] data = new byte[1024*len];
-            while (fileInputStream.read(data)!=-1){
-                fileOutputStream.write(data,0,len);
-            }
+            return strategy.copy(file.toPath(), target.toPath());
         } catch (IOException e) {
             e.printStackTrace();
-        }finally {
-            if(fileInputStream!=null){
-                try {
-                    fileInputStream.close();
-                }catch (Exception e){
-                    e.printStackTrace();
-                }
-            }
-            if(fileOutputStream!=null){
-                try {
-                    fileInputStream.close();
-                }catch (Exception e){
-                    e.printStackTrace();
-                }
-            }
+            return null;
         }
-
     }
 
 
@@ -2,6 +2,7 @@ import java.io.File;
 
 public class test {
     public static void main(String[] args) {
-        copyFile.Copy("C:\\Users\\YH\\Desktop\\Lessons\\笔记\\IOCAOP笔记.txt","C:\\Users\\YH\\Desktop");
+        CopyResult result = copyFile.Copy("C:\\Users\\YH\\Desktop\\Lessons\\笔记\\IOCAOP笔记.txt","C:\\Users\\YH\\Desktop");
+        System.out.println(result);
     }
 }
@@ -0,0 +1,36 @@
+import SourceCode.BoundedCache;
+
+import java.util.Random;
+
+/**
+ * BoundedCache的基准测试
+ * 比较LRU和W-TinyLFU在热点访问中夹杂扫描时的命中率
+ *
+ * 用法：java BoundedCacheBenchmark [请求数]
+ */
+public class BoundedCacheBenchmark {
+
+    public static void main(String[] args) {
+        run(MapBenchmark.keys(args));
+    }
+
+    static void run(int[] keys) {
+        System.out.printf("%n%-28s %12s%n", "cache(zipf+scan)", "hit rate");
+        for (BoundedCache.Policy policy : BoundedCache.Policy.values())
+            cacheHitRate(policy, keys.length);
+    }
+
+    //容量是热点键数的1/5  80%的请求访问偏斜分布的热点键，20%是从不重复的扫描键
+    static void cacheHitRate(BoundedCache.Policy policy, int n) {
+        int hotKeys = Math.max(1000, n / 100);
+        BoundedCache<Integer, Integer> cache = BoundedCache.<Integer, Integer>builder()
+                .maximumSize(hotKeys / 5).policy(policy).build();
+        Random random = new Random(42);
+        int scanKey = hotKeys;
+        for (int i = 0; i < n; i++) {
+            int key = i % 5 == 0 ? scanKey++ : (int) (Math.pow(random.nextDouble(), 3) * hotKeys);
+            cache.get(key, k -> k);
+        }
+        System.out.printf("%-28s %12.4f%n", "BoundedCache(" + policy + ")", cache.stats().getHitRate());
+    }
+}
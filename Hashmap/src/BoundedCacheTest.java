@@ -0,0 +1,101 @@
+import SourceCode.BoundedCache;
+import SourceCode.StripedCache;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BoundedCache的检查  两种淘汰策略都检查
+ * ①.上限大于键的范围时不会淘汰，和HashMap完全一致
+ * ②.上限很小时不断淘汰：查到的值必须是这个键最后一次写入的值，条目数和总权重任何时候都不超过上限
+ * ③.单独就超过上限的条目只淘汰它自己，不影响其他条目
+ * ④.过期：用手动推进的ticker，写入或访问超过时限的条目查不到，计入expiredCount
+ * ⑤.StripedCache和单个缓存的行为一致
+ */
+public class BoundedCacheTest {
+
+    public static void main(String[] args) {
+        for (BoundedCache.Policy policy : BoundedCache.Policy.values()) {
+            unbounded(policy);
+            evicting(policy);
+            overweight(policy);
+            expiry(policy);
+            striped(policy);
+            System.out.println(policy + "：全部检查通过");
+        }
+    }
+
+    static void unbounded(BoundedCache.Policy policy) {
+        BoundedCache<Integer, Integer> cache = BoundedCache.<Integer, Integer>builder()
+                .maximumSize(10_000).policy(policy).build();
+        new ModelCheck<Integer, Integer>(policy + "不淘汰", cache::put, cache::remove, cache::get, cache::size)
+                .run(200_000, random -> random.nextInt(2000), Random::nextInt)
+                .expectContents(cache::forEach);
+        ModelCheck.check(cache.stats().getEvictionCount() == 0, policy + "不淘汰：淘汰了条目 " + cache.stats());
+    }
+
+    static void evicting(BoundedCache.Policy policy) {
+        BoundedCache<Integer, Integer> bySize = BoundedCache.<Integer, Integer>builder()
+                .maximumSize(100).policy(policy).build();
+        new ModelCheck<Integer, Integer>(policy + "按条目数淘汰", bySize::put, bySize::remove, bySize::get, bySize::size)
+                .lossy()
+                .invariant(() -> ModelCheck.check(bySize.size() <= 100, policy + "按条目数淘汰：size=" + bySize.size()))
+                .run(200_000, random -> random.nextInt(2000), Random::nextInt);
+        ModelCheck.check(bySize.stats().getEvictionCount() > 0, policy + "按条目数淘汰：没有淘汰");
+
+        //权重是值的十进制位数
+        BoundedCache<Integer, Integer> byWeight = BoundedCache.<Integer, Integer>builder()
+                .maximumWeight(300).weigher((k, v) -> Integer.toString(v).length()).policy(policy).build();
+        new ModelCheck<Integer, Integer>(policy + "按权重淘汰", byWeight::put, byWeight::remove, byWeight::get, byWeight::size)
+                .lossy()
+                .invariant(() -> ModelCheck.check(byWeight.weightedSize() <= 300,
+                        policy + "按权重淘汰：weightedSize=" + byWeight.weightedSize()))
+                .run(200_000, random -> random.nextInt(2000), Random::nextInt);
+    }
+
+    static void overweight(BoundedCache.Policy policy) {
+        BoundedCache<Integer, String> cache = BoundedCache.<Integer, String>builder()
+                .maximumWeight(10).weigher((k, v) -> v.length()).policy(policy).build();
+        cache.put(1, "ab");
+        cache.put(2, "cd");
+        cache.put(3, "xxxxxxxxxxxx");
+        ModelCheck.check(cache.size() == 2 && cache.get(3) == null && "ab".equals(cache.get(1)) && "cd".equals(cache.get(2)),
+                policy + "：插入超重的条目淘汰了其他条目，size=" + cache.size());
+        //修改已有条目让它超重  也只淘汰它自己
+        cache.put(1, "xxxxxxxxxxx");
+        ModelCheck.check(cache.size() == 1 && cache.get(1) == null && "cd".equals(cache.get(2)) && cache.weightedSize() == 2,
+                policy + "：修改成超重的条目淘汰了其他条目，size=" + cache.size());
+    }
+
+    static void expiry(BoundedCache.Policy policy) {
+        long[] now = {0};
+        BoundedCache<Integer, Integer> afterWrite = BoundedCache.<Integer, Integer>builder()
+                .maximumSize(1000).policy(policy).expireAfterWrite(10, TimeUnit.NANOSECONDS).ticker(() -> now[0]).build();
+        afterWrite.put(1, 1);
+        now[0] += 5;
+        afterWrite.put(2, 2);
+        ModelCheck.check(afterWrite.get(1) != null, policy + "：还没过期就查不到了");
+        now[0] += 6;
+        ModelCheck.check(afterWrite.get(1) == null && afterWrite.get(2) != null, policy + "：expireAfterWrite");
+
+        BoundedCache<Integer, Integer> afterAccess = BoundedCache.<Integer, Integer>builder()
+                .maximumSize(1000).policy(policy).expireAfterAccess(10, TimeUnit.NANOSECONDS).ticker(() -> now[0]).build();
+        afterAccess.put(1, 1);
+        afterAccess.put(2, 2);
+        for (int i = 0; i < 5; i++) {
+            now[0] += 6;
+            ModelCheck.check(afterAccess.get(1) != null, policy + "：一直在访问的条目过期了");
+        }
+        ModelCheck.check(afterAccess.get(2) == null, policy + "：expireAfterAccess");
+        afterAccess.cleanUp();
+        ModelCheck.check(afterWrite.stats().getExpiredCount() == 1 && afterAccess.stats().getExpiredCount() == 1,
+                policy + "：expiredCount " + afterWrite.stats() + " " + afterAccess.stats());
+    }
+
+    static void striped(BoundedCache.Policy policy) {
+        StripedCache<Integer, Integer> cache = BoundedCache.<Integer, Integer>builder()
+                .maximumSize(10_000).policy(policy).buildStriped(8);
+        new ModelCheck<Integer, Integer>(policy + "分段", cache::put, cache::remove, cache::get, cache::size)
+                .run(200_000, random -> random.nextInt(2000), Random::nextInt);
+    }
+}
@@ -0,0 +1,134 @@
+import SourceCode.ChainedHashmap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ChainedHashmap的基准测试
+ * ①.一次性扩容和渐进式扩容时单次put的延迟分布
+ * ②.用hashCode全部相同的String键模拟哈希洪水，比较HashMap（红黑树）和ChainedHashmap（自动切换SipHash）的put耗时
+ * ③.逐个put、预分配后put和bulkLoad并行构建的耗时
+ * ④.reduceValues顺序和并行扫描整张表的耗时
+ *
+ * 用法：java ChainedHashmapBenchmark [条目数]
+ */
+public class ChainedHashmapBenchmark {
+
+    public static void main(String[] args) {
+        run(MapBenchmark.keys(args));
+    }
+
+    static void run(int[] keys) {
+        System.out.printf("%n%-28s %12s %12s %12s%n", "resize", "p99.9(ns)", "p99.99(ns)", "max(us)");
+        for (int round = 0; round < 2; round++) {
+            putLatency("ChainedHashmap(full)", keys, false, round == 1);
+            putLatency("ChainedHashmap(incremental)", keys, true, round == 1);
+        }
+
+        System.out.printf("%n%-28s %12s%n", "hash flooding", "put(ns/op)");
+        hashFlooding(keys.length);
+
+        System.out.printf("%n%-28s %12s%n", "bulk load", "time(ms)");
+        bulkLoad(keys);
+
+        System.out.printf("%n%-28s %12s%n", "scan(reduceValues)", "time(ms)");
+        parallelScan(keys);
+    }
+
+    //逐个put并记录每次put的耗时  扩容的那次put决定了最大值
+    static void putLatency(String name, int[] keys, boolean incremental, boolean print) {
+        ChainedHashmap<Integer, Integer> map = new ChainedHashmap<>(16, 0.75f, incremental);
+        long[] latencies = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            long start = System.nanoTime();
+            map.put(keys[i], i);
+            latencies[i] = System.nanoTime() - start;
+        }
+        if (!print)
+            return;
+        Arrays.sort(latencies);
+        int n = latencies.length;
+        System.out.printf("%-28s %12d %12d %12d%n", name, latencies[(int) (n * 0.999)],
+                latencies[(int) (n * 0.9999)], latencies[n - 1] / 1000);
+    }
+
+    //"Aa"和"BB"的hashCode相同，由它们拼成的等长字符串hashCode也全部相同
+    static void hashFlooding(int n) {
+        int bits = 31 - Integer.numberOfLeadingZeros(Math.max(n / 4, 2));
+        String[] keys = new String[1 << bits];
+        for (int m = 0; m < keys.length; m++) {
+            StringBuilder sb = new StringBuilder();
+            for (int b = 0; b < bits; b++)
+                sb.append(((m >>> b) & 1) == 0 ? "Aa" : "BB");
+            keys[m] = sb.toString();
+        }
+        for (int round = 0; round < MapBenchmark.ROUNDS; round++) {
+            Map<String, Integer> hashMap = new HashMap<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < keys.length; i++)
+                hashMap.put(keys[i], i);
+            long hashMapNanos = System.nanoTime() - start;
+            ChainedHashmap<String, Integer> chained = new ChainedHashmap<>();
+            start = System.nanoTime();
+            for (int i = 0; i < keys.length; i++)
+                chained.put(keys[i], i);
+            long chainedNanos = System.nanoTime() - start;
+            if (round == MapBenchmark.ROUNDS - 1) {
+                System.out.printf("%-28s %12.1f%n", "HashMap", (double) hashMapNanos / keys.length);
+                System.out.printf("%-28s %12.1f%n", "ChainedHashmap(keyed=" + chained.isKeyedHashing() + ")",
+                        (double) chainedNanos / keys.length);
+            }
+        }
+    }
+
+    static void bulkLoad(int[] keys) {
+        Integer[] boxed = new Integer[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            boxed[i] = keys[i];
+        for (int round = 0; round < MapBenchmark.ROUNDS; round++) {
+            long start = System.nanoTime();
+            ChainedHashmap<Integer, Integer> map = new ChainedHashmap<>();
+            for (Integer key : boxed)
+                map.put(key, key);
+            long putNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            map = new ChainedHashmap<>();
+            map.ensureCapacity(boxed.length);
+            for (Integer key : boxed)
+                map.put(key, key);
+            long presizedNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            map = ChainedHashmap.bulkLoad(boxed, boxed);
+            long bulkNanos = System.nanoTime() - start;
+            if (round == MapBenchmark.ROUNDS - 1) {
+                System.out.printf("%-28s %12.1f%n", "put", putNanos / 1e6);
+                System.out.printf("%-28s %12.1f%n", "ensureCapacity + put", presizedNanos / 1e6);
+                System.out.printf("%-28s %12.1f%n", "bulkLoad", bulkNanos / 1e6);
+            }
+        }
+    }
+
+    static void parallelScan(int[] keys) {
+        ChainedHashmap<Integer, Long> map = new ChainedHashmap<>();
+        for (int key : keys)
+            map.put(key, (long) key);
+        for (int round = 0; round < MapBenchmark.ROUNDS; round++) {
+            long start = System.nanoTime();
+            Long sequential = map.reduceValues(Long.MAX_VALUE, Long::sum);
+            long sequentialNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            Long parallel = map.reduceValues(1, Long::sum);
+            long parallelNanos = System.nanoTime() - start;
+            if (!sequential.equals(parallel))
+                throw new IllegalStateException("reduceValues mismatch");
+            if (round == MapBenchmark.ROUNDS - 1) {
+                System.out.printf("%-28s %12.1f%n", "sequential", sequentialNanos / 1e6);
+                System.out.printf("%-28s %12.1f%n", "parallel(" + Runtime.getRuntime().availableProcessors() + " cores)",
+                        parallelNanos / 1e6);
+            }
+        }
+    }
+}
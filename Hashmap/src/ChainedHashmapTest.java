@@ -0,0 +1,163 @@
+import SourceCode.ChainedHashmap;
+import SourceCode.HashmapStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ChainedHashmap的检查
+ * ①.一次性扩容和渐进式扩容都和HashMap比较；渐进式扩容时要确认确实有操作落在迁移的过程中，迁移中clear也要清干净
+ * ②.hashCode全部相同的String键会让它切换到SipHash，切换前后的条目都不能丢
+ * ③.bulkLoad、ensureCapacity、putAll构建出来的表和HashMap一致
+ * ④.统计快照：链表长度直方图的桶数等于容量、条目数等于size，迁移中也一样；打开统计后记录了get和扩容，负载历史随增删变化
+ * ⑤.spliterator和并行的forEach/reduceValues/search覆盖所有条目，每个条目只出现一次
+ */
+public class ChainedHashmapTest {
+
+    public static void main(String[] args) {
+        fullResize();
+        incrementalResize();
+        keyedHashing();
+        bulkLoad();
+        stats();
+        parallelOps();
+        System.out.println("ChainedHashmap：全部检查通过");
+    }
+
+    static void fullResize() {
+        ChainedHashmap<Integer, Integer> map = new ChainedHashmap<>();
+        new ModelCheck<Integer, Integer>("一次性扩容", map::put, map::remove, map::get, map::size)
+                .run(500_000, random -> random.nextInt(2000), Random::nextInt)
+                .expectContents(map::forEach);
+    }
+
+    static void incrementalResize() {
+        ChainedHashmap<Integer, Integer> map = new ChainedHashmap<>(16, 0.75f, true);
+        int[] rehashingOps = new int[1];
+        //键的范围很大，表一直在扩容
+        new ModelCheck<Integer, Integer>("渐进式扩容", map::put, map::remove, map::get, map::size)
+                .invariant(() -> {
+                    if (map.isRehashing())
+                        rehashingOps[0]++;
+                })
+                .run(500_000, random -> random.nextInt(200_000), Random::nextInt)
+                .expectContents(map::forEach);
+        ModelCheck.check(rehashingOps[0] > 0, "渐进式扩容：没有操作发生在迁移过程中");
+
+        ChainedHashmap<Integer, Integer> cleared = new ChainedHashmap<>(16, 0.75f, true);
+        int key = 0;
+        while (!cleared.isRehashing())
+            cleared.put(key++, key);
+        cleared.clear();
+        ModelCheck.check(cleared.isEmpty() && !cleared.isRehashing() && cleared.get(0) == null, "迁移中clear没有清干净");
+        new ModelCheck<Integer, Integer>("clear后", cleared::put, cleared::remove, cleared::get, cleared::size)
+                .run(100_000, random -> random.nextInt(2000), Random::nextInt)
+                .expectContents(cleared::forEach);
+    }
+
+    //"Aa"和"BB"的hashCode相同，由它们拼成的等长字符串hashCode也全部相同
+    static void keyedHashing() {
+        ChainedHashmap<String, Integer> map = new ChainedHashmap<>();
+        new ModelCheck<String, Integer>("hash冲突的String键", map::put, map::remove, map::get, map::size)
+                .run(200_000, random -> {
+                    StringBuilder sb = new StringBuilder();
+                    for (int b = 0; b < 10; b++)
+                        sb.append(random.nextBoolean() ? "Aa" : "BB");
+                    return sb.toString();
+                }, Random::nextInt)
+                .expectContents(map::forEach);
+        ModelCheck.check(map.isKeyedHashing(), "hash冲突的String键：没有切换到SipHash");
+    }
+
+    static void bulkLoad() {
+        ChainedHashmap<Integer, Integer> source = new ChainedHashmap<>();
+        ModelCheck<Integer, Integer> check = new ModelCheck<Integer, Integer>("bulkLoad的数据",
+                source::put, source::remove, source::get, source::size)
+                .run(200_000, random -> random.nextInt(50_000), Random::nextInt);
+        Integer[] keys = check.model.keySet().toArray(new Integer[0]);
+        Integer[] values = new Integer[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            values[i] = check.model.get(keys[i]);
+        check.expectContents(ChainedHashmap.bulkLoad(keys, values)::forEach);
+        check.expectContents(ChainedHashmap.bulkLoad(new ArrayList<>(check.model.entrySet()))::forEach);
+
+        ChainedHashmap<Integer, Integer> presized = new ChainedHashmap<>();
+        presized.ensureCapacity(keys.length);
+        presized.putAll(check.model);
+        check.expectContents(presized::forEach);
+        ChainedHashmap<Integer, Integer> copy = new ChainedHashmap<>();
+        copy.putAll(source);
+        check.expectContents(copy::forEach);
+    }
+
+    static void stats() {
+        ChainedHashmap<Integer, Integer> map = new ChainedHashmap<>();
+        map.enableStats();
+        new ModelCheck<Integer, Integer>("统计", map::put, map::remove, map::get, map::size)
+                .run(200_000, random -> random.nextInt(50_000), Random::nextInt);
+        HashmapStats stats = map.statsSnapshot();
+        checkHistogram(stats, map.size());
+        ModelCheck.check(stats.getResizeCount() > 0 && stats.getGetCount() > 0, "统计：没有记录扩容或get " + stats);
+
+        //迁移中旧数组里还没迁走的桶不能重复计数
+        ChainedHashmap<Integer, Integer> rehashing = new ChainedHashmap<>(16, 0.75f, true);
+        rehashing.enableStats();
+        int key = 0;
+        while (rehashing.size() < 10_000 || !rehashing.isRehashing())
+            rehashing.put(key++, key);
+        checkHistogram(rehashing.statsSnapshot(), rehashing.size());
+
+        //先增后删  负载历史应该先升后降，而不是一直等于负载因子
+        ChainedHashmap<Integer, Integer> shrinking = new ChainedHashmap<>();
+        shrinking.enableStats();
+        for (int i = 0; i < 100_000; i++)
+            shrinking.put(i, i);
+        for (int i = 0; i < 90_000; i++)
+            shrinking.remove(i);
+        double[] history = shrinking.statsSnapshot().getLoadHistory();
+        double min = Double.MAX_VALUE, max = 0;
+        for (double load : history) {
+            min = Math.min(min, load);
+            max = Math.max(max, load);
+        }
+        ModelCheck.check(history.length > 1 && max - min > 0.1, "统计：负载历史没有随增删变化 " + shrinking.statsSnapshot());
+    }
+
+    //直方图的下标是链表长度  所有桶加起来等于容量，按长度加权等于条目数
+    static void checkHistogram(HashmapStats stats, int size) {
+        long[] histogram = stats.getChainLengthHistogram();
+        long bins = 0, entries = 0;
+        for (int length = 0; length < histogram.length; length++) {
+            bins += histogram[length];
+            entries += length * histogram[length];
+        }
+        ModelCheck.check(bins == stats.getCapacity() && entries == size,
+                "统计：直方图有" + bins + "个桶、" + entries + "个条目，实际容量" + stats.getCapacity() + "、size " + size);
+    }
+
+    static void parallelOps() {
+        ChainedHashmap<Integer, Integer> map = new ChainedHashmap<>();
+        ModelCheck<Integer, Integer> check = new ModelCheck<Integer, Integer>("并行遍历",
+                map::put, map::remove, map::get, map::size)
+                .run(500_000, random -> random.nextInt(200_000), Random::nextInt);
+        //并行forEach的结果放进并发的map  同一个键出现两次说明切分有重叠
+        Map<Integer, Integer> seen = new ConcurrentHashMap<>();
+        check.expectContents(action -> map.forEach(1, (k, v) -> {
+            if (seen.put(k, v) != null)
+                throw new IllegalStateException("并行forEach重复访问了" + k);
+            action.accept(k, v);
+        }));
+        //int溢出时按2^32取模，加法仍然满足结合律
+        int expected = 0;
+        for (int v : check.model.values())
+            expected += v;
+        ModelCheck.check(map.reduceValues(Long.MAX_VALUE, Integer::sum) == expected, "顺序reduceValues的结果不对");
+        ModelCheck.check(map.reduceValues(1, Integer::sum) == expected, "并行reduceValues的结果不对");
+        List<Integer> keys = new ArrayList<>(check.model.keySet());
+        Integer target = keys.get(keys.size() / 2);
+        ModelCheck.check(target.equals(map.search(1, (k, v) -> k.equals(target) ? k : null)), "并行search没有找到" + target);
+    }
+}
@@ -0,0 +1,58 @@
+import SourceCode.ConcurrentHashmap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * ConcurrentHashmap的基准测试
+ * 线程数从1翻倍到CPU数的两倍，比较多线程并发读时Collections.synchronizedMap和ConcurrentHashmap的吞吐量
+ *
+ * 用法：java ConcurrentHashmapBenchmark [条目数]
+ */
+public class ConcurrentHashmapBenchmark {
+
+    public static void main(String[] args) {
+        run(MapBenchmark.keys(args));
+    }
+
+    static void run(int[] keys) {
+        Object value = new Object();
+        Map<Integer, Object> synchronizedMap = Collections.synchronizedMap(new HashMap<Integer, Object>());
+        ConcurrentHashmap<Integer, Object> concurrentMap = new ConcurrentHashmap<>();
+        for (int key : keys) {
+            synchronizedMap.put(key, value);
+            concurrentMap.put(key, value);
+        }
+        System.out.printf("%n%-28s %8s %16s%n", "map", "threads", "get(Mops/s)");
+        for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors() * 2; threads <<= 1) {
+            concurrentReads("synchronizedMap(HashMap)", keys, threads, synchronizedMap::get);
+            concurrentReads("ConcurrentHashmap", keys, threads, concurrentMap::get);
+        }
+    }
+
+    //threads个线程同时把所有键读一遍  报告总的每秒读取次数
+    static void concurrentReads(String name, int[] keys, int threads, Function<Integer, Object> get) {
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                for (int key : keys)
+                    if (get.apply(key) == null)
+                        throw new IllegalStateException(name + " lost " + key);
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-28s %8d %16.1f%n", name, threads, (double) keys.length * threads / nanos * 1000);
+    }
+}
@@ -0,0 +1,99 @@
+import SourceCode.ConcurrentHashmap;
+
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * ConcurrentHashmap的检查
+ * ①.单线程和HashMap比较，另外检查putIfAbsent不覆盖已有的值
+ * ②.多线程：从很小的容量开始，每个线程写自己那一段键，put的同时不断触发多线程一起扩容，最后逐个核对
+ * ③.hashCode全部相同的String键会让它切换到SipHash：单线程和HashMap比较；多线程同时写入，切换的迁移和写入交错进行
+ */
+public class ConcurrentHashmapTest {
+
+    public static void main(String[] args) throws InterruptedException {
+        sequential();
+        concurrent();
+        keyedHashing();
+    }
+
+    static void sequential() {
+        ConcurrentHashmap<Integer, Integer> map = new ConcurrentHashmap<>();
+        ModelCheck<Integer, Integer> check = new ModelCheck<Integer, Integer>("ConcurrentHashmap",
+                map::put, map::remove, map::get, map::size)
+                .run(500_000, random -> random.nextInt(2000), Random::nextInt);
+        for (int key = 0; key < 2000; key++)
+            check.expect(check.model.putIfAbsent(key, -key), map.putIfAbsent(key, -key), "putIfAbsent", key);
+        for (int key = 0; key < 2000; key++)
+            check.expect(check.model.get(key), map.get(key), "get", key);
+        System.out.println("单线程：和HashMap一致，" + map.size() + "个条目");
+    }
+
+    static void concurrent() throws InterruptedException {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        int perThread = 200_000;
+        ConcurrentHashmap<Integer, Integer> shared = new ConcurrentHashmap<>(2);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int base = t * perThread;
+            //每个线程put自己的一段键，再删掉其中的偶数
+            workers[t] = new Thread(() -> {
+                for (int i = base; i < base + perThread; i++)
+                    shared.put(i, i);
+                for (int i = base; i < base + perThread; i += 2)
+                    shared.remove(i);
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+        for (int i = 0; i < threads * perThread; i++)
+            ModelCheck.check(Objects.equals(shared.get(i), i % 2 == 0 ? null : i), "并发写入后get(" + i + ")");
+        ModelCheck.check(shared.size() == threads * perThread / 2, "并发写入后size=" + shared.size());
+        System.out.println(threads + "个线程同时写入并扩容：" + shared.size() + "个条目，全部正确");
+    }
+
+    //"Aa"和"BB"的hashCode相同，第bits位决定第b段用哪个  由它们拼成的等长字符串hashCode全部相同
+    static String colliding(int bits, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int b = 0; b < length; b++)
+            sb.append((bits >>> b & 1) == 0 ? "Aa" : "BB");
+        return sb.toString();
+    }
+
+    static void keyedHashing() throws InterruptedException {
+        ConcurrentHashmap<String, Integer> map = new ConcurrentHashmap<>();
+        new ModelCheck<String, Integer>("hash冲突的String键", map::put, map::remove, map::get, map::size)
+                .run(200_000, random -> colliding(random.nextInt(1 << 10), 10), Random::nextInt);
+        ModelCheck.check(map.isKeyedHashing(), "hash冲突的String键：没有切换到SipHash");
+
+        //每个线程写自己那一部分键  切换发生在写入过程中，写线程沿ForwardingNode进入新数组时要换用新的hash
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        int keys = 1 << 14;
+        ConcurrentHashmap<String, Integer> shared = new ConcurrentHashmap<>(2);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            workers[t] = new Thread(() -> {
+                for (int i = first; i < keys; i += threads)
+                    shared.put(colliding(i, 14), i);
+                for (int i = first; i < keys; i += threads * 2)
+                    shared.remove(colliding(i, 14));
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+        int expected = 0;
+        for (int i = 0; i < keys; i++) {
+            boolean removed = i % (threads * 2) < threads;
+            if (!removed)
+                expected++;
+            ModelCheck.check(Objects.equals(shared.get(colliding(i, 14)), removed ? null : i),
+                    "并发写入冲突键后get(" + i + ")");
+        }
+        ModelCheck.check(shared.isKeyedHashing(), "并发写入冲突键：没有切换到SipHash");
+        ModelCheck.check(shared.size() == expected, "并发写入冲突键后size=" + shared.size());
+        System.out.println(threads + "个线程同时写入hash冲突的String键：已切换到SipHash，" + shared.size() + "个条目，全部正确");
+    }
+}
@@ -0,0 +1,41 @@
+import java.util.Random;
+
+/**
+ * 哈希表的基准测试  每种结构的测试在各自的类里，都可以单独运行：
+ * PrimitiveMapBenchmark：java.util.HashMap和基本类型的开放寻址表（IntObjectMap、LongLongMap）的put、get耗时和堆内存
+ * ConcurrentHashmapBenchmark：多线程并发读时Collections.synchronizedMap和ConcurrentHashmap的吞吐量
+ * ChainedHashmapBenchmark：扩容时的put延迟、哈希洪水、批量构建、并行扫描
+ * MappedHashmapBenchmark：重启时逐个put重建表和打开快照的耗时
+ * BoundedCacheBenchmark：LRU和W-TinyLFU在热点访问中夹杂扫描时的命中率
+ * SwissHashmapBenchmark：不同规模下拉链法和SwissHashmap的put、命中get、未命中get
+ * PersistentHashmapBenchmark：发布新版本时复制整张表和路径复制的单次更新耗时
+ * 这里按顺序把它们全部跑一遍
+ * 每种结构的正确性检查在对应的*Test里，和java.util.HashMap做同样的随机操作比较结果（见ModelCheck）
+ *
+ * 用法：java MapBenchmark [条目数]
+ */
+public class MapBenchmark {
+
+    static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int[] keys = keys(args);
+        PrimitiveMapBenchmark.run(keys);
+        ConcurrentHashmapBenchmark.run(keys);
+        ChainedHashmapBenchmark.run(keys);
+        MappedHashmapBenchmark.run(keys);
+        BoundedCacheBenchmark.run(keys);
+        SwissHashmapBenchmark.run(keys);
+        PersistentHashmapBenchmark.run(keys);
+    }
+
+    //第一个参数是条目数，默认一百万  键是固定种子生成的随机int，每次运行都一样
+    static int[] keys(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int[] keys = new int[n];
+        Random random = new Random(42);
+        for (int i = 0; i < n; i++)
+            keys[i] = random.nextInt();
+        return keys;
+    }
+}
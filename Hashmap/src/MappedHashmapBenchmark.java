@@ -0,0 +1,61 @@
+import SourceCode.ChainedHashmap;
+import SourceCode.MappedHashmap;
+import SourceCode.Serializer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * MappedHashmap的基准测试
+ * 比较重启时逐个put重建表和打开MappedHashmap快照的耗时
+ *
+ * 用法：java MappedHashmapBenchmark [条目数]
+ */
+public class MappedHashmapBenchmark {
+
+    public static void main(String[] args) {
+        run(MapBenchmark.keys(args));
+    }
+
+    static void run(int[] keys) {
+        System.out.printf("%n%-28s %12s%n", "warm start", "time(ms)");
+        try {
+            warmStart(keys);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //重建：把所有键值重新put一遍；快照：mmap打开文件后读一遍所有键
+    static void warmStart(int[] keys) throws IOException {
+        ChainedHashmap<Integer, Integer> source = new ChainedHashmap<>();
+        for (int i = 0; i < keys.length; i++)
+            source.put(keys[i], i);
+        Path file = Files.createTempFile("map", ".snapshot");
+        try {
+            MappedHashmap.writeSnapshot(source, file, Serializer.INTEGER, Serializer.INTEGER);
+            source = null;
+
+            long start = System.nanoTime();
+            ChainedHashmap<Integer, Integer> rebuilt = new ChainedHashmap<>();
+            for (int i = 0; i < keys.length; i++)
+                rebuilt.put(keys[i], i);
+            System.out.printf("%-28s %12.1f%n", "rebuild by put", (System.nanoTime() - start) / 1e6);
+
+            start = System.nanoTime();
+            try (MappedHashmap<Integer, Integer> mapped = MappedHashmap.open(file, Serializer.INTEGER, Serializer.INTEGER)) {
+                System.out.printf("%-28s %12.1f%n", "open snapshot", (System.nanoTime() - start) / 1e6);
+                long hits = 0;
+                for (int key : keys)
+                    if (mapped.get(key) != null)
+                        hits++;
+                System.out.printf("%-28s %12.1f%n", "open snapshot + read all", (System.nanoTime() - start) / 1e6);
+                if (hits != keys.length)
+                    throw new IllegalStateException("MappedHashmap lost entries");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import SourceCode.ChainedHashmap;
+import SourceCode.MappedHashmap;
+import SourceCode.Serializer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * MappedHashmap的检查
+ * ①.随机写一张ChainedHashmap，写成快照再打开，快照里查到的和HashMap一致
+ * ②.在打开的快照上继续随机修改（提升到堆上），materialize之后再写一次快照，重新打开还是一致
+ * ③.已经切换到SipHash的表（hash冲突的String键）写成快照后，用同样的密钥查找
+ * ④.close之后不能再使用
+ */
+public class MappedHashmapTest {
+
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("map", ".snapshot");
+        try {
+            snapshotAndPromote(file);
+            keyedSnapshot(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        System.out.println("MappedHashmap：全部检查通过");
+    }
+
+    static void snapshotAndPromote(Path file) throws IOException {
+        ChainedHashmap<Integer, Integer> source = new ChainedHashmap<>();
+        ModelCheck<Integer, Integer> written = new ModelCheck<Integer, Integer>("快照",
+                source::put, source::remove, source::get, source::size)
+                .run(100_000, random -> random.nextInt(20_000), Random::nextInt);
+        MappedHashmap.writeSnapshot(source, file, Serializer.INTEGER, Serializer.INTEGER);
+        ChainedHashmap<Integer, Integer> materialized;
+        MappedHashmap<Integer, Integer> map = MappedHashmap.open(file, Serializer.INTEGER, Serializer.INTEGER);
+        try {
+            for (Integer key = 0; key < 20_000; key++)
+                written.expect(written.model.get(key), map.get(key), "打开快照后get", key);
+            written.expectContents(map::forEach);
+
+            ModelCheck<Integer, Integer> promoted = new ModelCheck<Integer, Integer>("快照上修改",
+                    map::put, map::remove, map::get, map::size);
+            promoted.model.putAll(written.model);
+            promoted.run(200_000, random -> random.nextInt(20_000), Random::nextInt)
+                    .expectContents(map::forEach);
+            ModelCheck.check(map.promotedCount() > 0, "快照上修改：没有条目被提升到堆上");
+            materialized = map.materialize();
+            promoted.expectContents(materialized::forEach);
+        } finally {
+            map.close();
+        }
+        try {
+            map.get(0);
+            throw new IllegalStateException("close之后还能get");
+        } catch (IllegalStateException e) {
+            if (!e.getMessage().contains("closed"))
+                throw e;
+        }
+
+        //materialize的结果可以写成新的快照
+        MappedHashmap.writeSnapshot(materialized, file, Serializer.INTEGER, Serializer.INTEGER);
+        try (MappedHashmap<Integer, Integer> reopened = MappedHashmap.open(file, Serializer.INTEGER, Serializer.INTEGER)) {
+            ModelCheck.check(reopened.size() == materialized.size() && reopened.promotedCount() == 0,
+                    "重新写的快照：size " + reopened.size() + " != " + materialized.size());
+            materialized.forEach((k, v) -> ModelCheck.check(v.equals(reopened.get(k)), "重新写的快照：get(" + k + ")"));
+        }
+    }
+
+    //"Aa"和"BB"的hashCode相同，由它们拼成的等长字符串hashCode也全部相同
+    static void keyedSnapshot(Path file) throws IOException {
+        ChainedHashmap<String, Integer> source = new ChainedHashmap<>();
+        ModelCheck<String, Integer> check = new ModelCheck<String, Integer>("SipHash快照",
+                source::put, source::remove, source::get, source::size)
+                .run(50_000, random -> {
+                    StringBuilder sb = new StringBuilder();
+                    for (int b = 0; b < 10; b++)
+                        sb.append(random.nextBoolean() ? "Aa" : "BB");
+                    return sb.toString();
+                }, Random::nextInt);
+        ModelCheck.check(source.isKeyedHashing(), "SipHash快照：原表没有切换到SipHash");
+        MappedHashmap.writeSnapshot(source, file, Serializer.STRING, Serializer.INTEGER);
+        try (MappedHashmap<String, Integer> map = MappedHashmap.open(file, Serializer.STRING, Serializer.INTEGER)) {
+            for (String key : check.model.keySet())
+                check.expect(check.model.get(key), map.get(key), "打开快照后get", key);
+            check.expect(null, map.get("AaAaAaAaAaAaAaAaAaAaAa"), "打开快照后get", "不存在的键");
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * 各个*Test共用的模型检查
+ * 被测的表和java.util.HashMap（模型）做同样的随机put/remove/get，每一步的返回值和size都要和模型一致
+ * 这里只管所有表都有的这三个操作，扩容、淘汰、快照、旧版本这些各个结构自己的特性由各自的测试检查
+ *
+ * 用法：
+ *     new ModelCheck<Integer, Integer>("SwissHashmap", map::put, map::remove, map::get, map::size)
+ *             .run(100_000, random -> random.nextInt(2000), Random::nextInt)
+ *             .expectContents(map::forEach);
+ */
+final class ModelCheck<K, V> {
+
+    final String name;
+    final HashMap<K, V> model = new HashMap<>();
+    final Random random = new Random(42);
+    private final BiFunction<K, V, V> put;
+    private final Function<K, V> remove;
+    private final Function<K, V> get;
+    private final IntSupplier size;
+    //会淘汰条目的表（缓存）  查不到不算错，查到的值必须一致，也不比较size
+    private boolean lossy;
+    //每一步操作之后检查的条件
+    private Runnable invariant = () -> {
+    };
+
+    ModelCheck(String name, BiFunction<K, V, V> put, Function<K, V> remove, Function<K, V> get, IntSupplier size) {
+        this.name = name;
+        this.put = put;
+        this.remove = remove;
+        this.get = get;
+        this.size = size;
+    }
+
+    ModelCheck<K, V> lossy() {
+        this.lossy = true;
+        return this;
+    }
+
+    ModelCheck<K, V> invariant(Runnable invariant) {
+        this.invariant = invariant;
+        return this;
+    }
+
+    //ops次随机操作  put占一半，remove占3/10，剩下是get；键的范围要比ops小得多，才会经常碰到已有的键
+    ModelCheck<K, V> run(int ops, Function<Random, K> keys, Function<Random, V> values) {
+        for (int i = 0; i < ops; i++) {
+            K key = keys.apply(random);
+            int op = random.nextInt(10);
+            if (op < 5) {
+                V value = values.apply(random);
+                expect(model.put(key, value), put.apply(key, value), "put", key);
+            } else if (op < 8) {
+                expect(model.remove(key), remove.apply(key), "remove", key);
+            } else {
+                expect(model.get(key), get.apply(key), "get", key);
+            }
+            if (!lossy && size.getAsInt() != model.size())
+                throw new IllegalStateException(name + " size: " + size.getAsInt() + " != " + model.size());
+            invariant.run();
+        }
+        return this;
+    }
+
+    //用表的forEach把所有条目取出来  必须和模型完全一样
+    ModelCheck<K, V> expectContents(Consumer<BiConsumer<K, V>> forEach) {
+        Map<K, V> copy = new HashMap<>();
+        forEach.accept(copy::put);
+        if (!copy.equals(model))
+            throw new IllegalStateException(name + " 遍历得到" + copy.size() + "个条目，和模型的" + model.size() + "个不同");
+        return this;
+    }
+
+    void expect(Object expected, Object actual, String op, Object key) {
+        if (lossy && actual == null)
+            return;
+        if (!Objects.equals(expected, actual))
+            throw new IllegalStateException(name + " " + op + "(" + key + "): " + actual + " != " + expected);
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition)
+            throw new IllegalStateException(message);
+    }
+}
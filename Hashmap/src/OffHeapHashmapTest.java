@@ -0,0 +1,32 @@
+import SourceCode.OffHeapHashmap;
+import SourceCode.Serializer;
+
+/**
+ * OffHeapHashmap的检查
+ * 值是长度不固定的字符串，有的put能原地覆盖，有的要追加新记录留下垃圾；数据块只有64K，会频繁分配新块和自动整理
+ * 手动compact之后所有条目还在，占用的堆外内存不会变多；close之后不能再使用
+ */
+public class OffHeapHashmapTest {
+
+    public static void main(String[] args) {
+        OffHeapHashmap<Integer, String> map = new OffHeapHashmap<>(Serializer.INTEGER, Serializer.STRING, 16, 64 * 1024);
+        ModelCheck<Integer, String> check = new ModelCheck<Integer, String>("OffHeapHashmap",
+                map::put, map::remove, map::get, map::size)
+                .run(500_000, random -> random.nextInt(2000),
+                        random -> Integer.toString(random.nextInt(), 2 + random.nextInt(35)));
+        long before = map.offHeapBytes();
+        map.compact();
+        for (Integer key = 0; key < 2000; key++)
+            check.expect(check.model.get(key), map.get(key), "compact后get", key);
+        ModelCheck.check(map.offHeapBytes() <= before, "compact后堆外内存变多了：" + before + " -> " + map.offHeapBytes());
+        map.close();
+        try {
+            map.get(0);
+            throw new IllegalStateException("close之后还能get");
+        } catch (IllegalStateException e) {
+            if (!e.getMessage().contains("closed"))
+                throw e;
+        }
+        System.out.println("OffHeapHashmap：和HashMap一致，compact后" + check.model.size() + "个条目都在，堆外" + before + "字节");
+    }
+}
@@ -0,0 +1,55 @@
+import SourceCode.ChainedHashmap;
+import SourceCode.PersistentHashmap;
+
+/**
+ * PersistentHashmap的基准测试
+ * 比较发布新版本时复制整张ChainedHashmap和PersistentHashmap路径复制的单次更新耗时
+ *
+ * 用法：java PersistentHashmapBenchmark [条目数]
+ */
+public class PersistentHashmapBenchmark {
+
+    public static void main(String[] args) {
+        run(MapBenchmark.keys(args));
+    }
+
+    static void run(int[] keys) {
+        System.out.printf("%n%-28s %12s%n", "publish update", "update(us/op)");
+        publishUpdate(keys);
+    }
+
+    //每次更新都产生一个新版本，旧版本保持可读
+    static void publishUpdate(int[] keys) {
+        PersistentHashmap.Transient<Integer, Integer> builder = PersistentHashmap.<Integer, Integer>empty().asTransient();
+        ChainedHashmap<Integer, Integer> copyOnWrite = new ChainedHashmap<>();
+        for (int key : keys) {
+            builder.put(key, key);
+            copyOnWrite.put(key, key);
+        }
+        PersistentHashmap<Integer, Integer> persistent = builder.persistent();
+        int copies = 10;
+        int updates = 100_000;
+        for (int round = 0; round < MapBenchmark.ROUNDS; round++) {
+            long start = System.nanoTime();
+            ChainedHashmap<Integer, Integer> version = copyOnWrite;
+            for (int i = 0; i < copies; i++) {
+                ChainedHashmap<Integer, Integer> next = new ChainedHashmap<>();
+                next.putAll(version);
+                next.put(keys[i], i);
+                version = next;
+            }
+            long copyNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            PersistentHashmap<Integer, Integer> snapshot = persistent;
+            for (int i = 0; i < updates; i++)
+                snapshot = snapshot.put(keys[i % keys.length], i);
+            long persistentNanos = System.nanoTime() - start;
+            if (version.size() != snapshot.size())
+                throw new IllegalStateException("size mismatch");
+            if (round == MapBenchmark.ROUNDS - 1) {
+                System.out.printf("%-28s %12.2f%n", "copy ChainedHashmap", copyNanos / 1e3 / copies);
+                System.out.printf("%-28s %12.2f%n", "PersistentHashmap", persistentNanos / 1e3 / updates);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import SourceCode.PersistentHashmap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * PersistentHashmap的检查
+ * ①.每次put/remove都产生新版本，新版本和HashMap一致；每隔一段保存一个旧版本和当时HashMap的副本，
+ *   最后检查所有旧版本都没有被后来的修改影响
+ * ②.Transient批量修改：中途自己的get正确，persistent()之后和HashMap一致，原来的版本不变，之后不能再用
+ * ③.hashCode相同的键放在冲突节点里，增删之后也和HashMap一致
+ */
+public class PersistentHashmapTest {
+
+    //当前版本  put/remove把它换成新版本并返回旧值，这样可以接到ModelCheck上
+    static final class Current<K, V> {
+        PersistentHashmap<K, V> map = PersistentHashmap.empty();
+
+        V put(K key, V value) {
+            V old = map.get(key);
+            map = map.put(key, value);
+            return old;
+        }
+
+        V remove(K key) {
+            V old = map.get(key);
+            map = map.remove(key);
+            return old;
+        }
+
+        V get(K key) {
+            return map.get(key);
+        }
+
+        int size() {
+            return map.size();
+        }
+    }
+
+    public static void main(String[] args) {
+        PersistentHashmap<Integer, Integer> last = versions();
+        transients(last);
+        collisions();
+        System.out.println("PersistentHashmap：全部检查通过");
+    }
+
+    static PersistentHashmap<Integer, Integer> versions() {
+        Current<Integer, Integer> current = new Current<>();
+        List<PersistentHashmap<Integer, Integer>> versions = new ArrayList<>();
+        List<Map<Integer, Integer>> snapshots = new ArrayList<>();
+        ModelCheck<Integer, Integer> check = new ModelCheck<Integer, Integer>("PersistentHashmap",
+                current::put, current::remove, current::get, current::size);
+        int[] step = {0};
+        check.invariant(() -> {
+            if (++step[0] % 10_000 == 0) {
+                versions.add(current.map);
+                snapshots.add(new HashMap<>(check.model));
+            }
+        }).run(500_000, random -> random.nextInt(2000), Random::nextInt)
+                .expectContents(current.map::forEach);
+        for (int v = 0; v < versions.size(); v++) {
+            Map<Integer, Integer> copy = new HashMap<>();
+            versions.get(v).forEach(copy::put);
+            ModelCheck.check(copy.equals(snapshots.get(v)), "第" + v + "个旧版本被后来的修改影响了");
+        }
+        return current.map;
+    }
+
+    static void transients(PersistentHashmap<Integer, Integer> before) {
+        Map<Integer, Integer> beforeContents = new HashMap<>();
+        before.forEach(beforeContents::put);
+        PersistentHashmap.Transient<Integer, Integer> batch = before.asTransient();
+        ModelCheck<Integer, Integer> check = new ModelCheck<Integer, Integer>("Transient", (k, v) -> {
+            Integer old = batch.get(k);
+            batch.put(k, v);
+            return old;
+        }, k -> {
+            Integer old = batch.get(k);
+            batch.remove(k);
+            return old;
+        }, batch::get, batch::size);
+        check.model.putAll(beforeContents);
+        check.run(200_000, random -> random.nextInt(2000), Random::nextInt);
+        PersistentHashmap<Integer, Integer> after = batch.persistent();
+        check.expectContents(after::forEach);
+
+        Map<Integer, Integer> copy = new HashMap<>();
+        before.forEach(copy::put);
+        ModelCheck.check(copy.equals(beforeContents), "Transient修改了原来的版本");
+        try {
+            batch.put(0, 0);
+            throw new IllegalStateException("persistent()之后Transient还能修改");
+        } catch (IllegalStateException e) {
+            if (!e.getMessage().contains("after persistent()"))
+                throw e;
+        }
+    }
+
+    //"Aa"和"BB"的hashCode相同，由它们拼成的6对共64个字符串hashCode全部相同
+    static void collisions() {
+        Current<String, Integer> current = new Current<>();
+        new ModelCheck<String, Integer>("hash冲突的键", current::put, current::remove, current::get, current::size)
+                .run(50_000, random -> {
+                    StringBuilder sb = new StringBuilder();
+                    for (int b = 0; b < 6; b++)
+                        sb.append(random.nextBoolean() ? "Aa" : "BB");
+                    return sb.toString();
+                }, Random::nextInt)
+                .expectContents(current.map::forEach);
+    }
+}
@@ -0,0 +1,111 @@
+import SourceCode.IntObjectMap;
+import SourceCode.LongLongMap;
+
+import java.util.HashMap;
+
+/**
+ * 基本类型的开放寻址表的基准测试
+ * SourceCode.Hashmap是jdk1.8 HashMap源码的注释版，这里直接用java.util.HashMap代表它的putVal/resize路径，
+ * 和IntObjectMap、LongLongMap比较put、get的耗时以及占用的堆内存
+ *
+ * 用法：java PrimitiveMapBenchmark [条目数]
+ */
+public class PrimitiveMapBenchmark {
+
+    public static void main(String[] args) {
+        run(MapBenchmark.keys(args));
+    }
+
+    static void run(int[] keys) {
+        int n = keys.length;
+        Object value = new Object();
+        System.out.printf("%-28s %12s %12s %14s%n", "map", "put(ns/op)", "get(ns/op)", "heap(B/entry)");
+        for (int round = 0; round < MapBenchmark.ROUNDS; round++) {
+            //前几轮是预热，只打印最后一轮
+            boolean print = round == MapBenchmark.ROUNDS - 1;
+
+            long before = usedHeap();
+            long start = System.nanoTime();
+            HashMap<Integer, Object> hashMap = new HashMap<>();
+            for (int key : keys)
+                hashMap.put(key, value);
+            long put = System.nanoTime() - start;
+            long heap = usedHeap() - before;
+            start = System.nanoTime();
+            long hits = 0;
+            for (int key : keys)
+                if (hashMap.get(key) != null)
+                    hits++;
+            long get = System.nanoTime() - start;
+            if (print)
+                report("HashMap<Integer,Object>", n, put, get, heap, hits);
+            hashMap = null;
+
+            before = usedHeap();
+            start = System.nanoTime();
+            IntObjectMap<Object> intMap = new IntObjectMap<>();
+            for (int key : keys)
+                intMap.put(key, value);
+            put = System.nanoTime() - start;
+            heap = usedHeap() - before;
+            start = System.nanoTime();
+            hits = 0;
+            for (int key : keys)
+                if (intMap.get(key) != null)
+                    hits++;
+            get = System.nanoTime() - start;
+            if (print)
+                report("IntObjectMap<Object>", n, put, get, heap, hits);
+            intMap = null;
+
+            before = usedHeap();
+            start = System.nanoTime();
+            HashMap<Long, Long> boxed = new HashMap<>();
+            for (int key : keys)
+                boxed.put((long) key, (long) key);
+            put = System.nanoTime() - start;
+            heap = usedHeap() - before;
+            start = System.nanoTime();
+            hits = 0;
+            for (int key : keys)
+                if (boxed.get((long) key) != null)
+                    hits++;
+            get = System.nanoTime() - start;
+            if (print)
+                report("HashMap<Long,Long>", n, put, get, heap, hits);
+            boxed = null;
+
+            before = usedHeap();
+            start = System.nanoTime();
+            LongLongMap longMap = new LongLongMap();
+            for (int key : keys)
+                longMap.put(key, key);
+            put = System.nanoTime() - start;
+            heap = usedHeap() - before;
+            start = System.nanoTime();
+            hits = 0;
+            for (int key : keys)
+                if (longMap.containsKey(key))
+                    hits++;
+            get = System.nanoTime() - start;
+            if (print)
+                report("LongLongMap", n, put, get, heap, hits);
+            longMap = null;
+        }
+    }
+
+    static void report(String name, int n, long putNanos, long getNanos, long heap, long hits) {
+        if (hits == 0)
+            throw new IllegalStateException(name + " found nothing");
+        System.out.printf("%-28s %12.1f %12.1f %14.1f%n",
+                name, (double) putNanos / n, (double) getNanos / n, (double) heap / n);
+    }
+
+    //GC后已使用的堆内存  只是估算，同一次运行中的相对大小有参考价值
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
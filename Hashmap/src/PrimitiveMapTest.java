@@ -0,0 +1,54 @@
+import SourceCode.IntObjectMap;
+import SourceCode.LongLongMap;
+import SourceCode.LongObjectMap;
+
+import java.util.Random;
+
+/**
+ * IntObjectMap、LongObjectMap、LongLongMap的检查
+ * 键的范围里有0（单独存放）和负数；删除不留墓碑而是把后面的元素往前挪（backward shift），
+ * 所以最后把键全部删掉，探测链上不能留下任何旧条目
+ */
+public class PrimitiveMapTest {
+
+    //LongLongMap查不到时返回的值  随机的值都是int范围内的，不会和它混淆
+    static final long NO_ENTRY = Long.MIN_VALUE;
+
+    public static void main(String[] args) {
+        IntObjectMap<Integer> intMap = new IntObjectMap<>();
+        ModelCheck<Integer, Integer> intCheck = new ModelCheck<Integer, Integer>("IntObjectMap",
+                intMap::put, intMap::remove, intMap::get, intMap::size)
+                .run(500_000, random -> random.nextInt(2000) - 1000, Random::nextInt);
+        for (Integer key : intCheck.model.keySet())
+            intMap.remove(key);
+        for (int key = -1000; key < 1000; key++)
+            ModelCheck.check(!intMap.containsKey(key), "IntObjectMap删空后还能查到" + key);
+        ModelCheck.check(intMap.isEmpty(), "IntObjectMap删空后size=" + intMap.size());
+
+        LongObjectMap<Integer> longMap = new LongObjectMap<>();
+        ModelCheck<Long, Integer> longCheck = new ModelCheck<Long, Integer>("LongObjectMap",
+                longMap::put, longMap::remove, longMap::get, longMap::size)
+                .run(500_000, random -> (long) (random.nextInt(2000) - 1000) << 32, Random::nextInt);
+        for (Long key : longCheck.model.keySet())
+            longMap.remove(key);
+        ModelCheck.check(longMap.isEmpty(), "LongObjectMap删空后size=" + longMap.size());
+
+        LongLongMap longLongMap = new LongLongMap(16, 0.75f, NO_ENTRY);
+        ModelCheck<Long, Long> longLongCheck = new ModelCheck<Long, Long>("LongLongMap",
+                (k, v) -> orNull(longLongMap.put(k, v)), k -> orNull(longLongMap.remove(k)),
+                k -> orNull(longLongMap.get(k)), longLongMap::size)
+                .run(500_000, random -> (long) (random.nextInt(2000) - 1000), random -> (long) random.nextInt());
+        //值是基本类型，containsKey才能区分“没有”和“值等于noEntryValue”
+        for (long key = -1000; key < 1000; key++)
+            ModelCheck.check(longLongMap.containsKey(key) == longLongCheck.model.containsKey(key),
+                    "LongLongMap.containsKey(" + key + ")");
+        for (Long key : longLongCheck.model.keySet())
+            longLongMap.remove(key);
+        ModelCheck.check(longLongMap.isEmpty() && longLongMap.getOrDefault(0, -1) == -1, "LongLongMap删空后还有条目");
+        System.out.println("IntObjectMap、LongObjectMap、LongLongMap：和HashMap一致，删空后没有残留");
+    }
+
+    static Long orNull(long value) {
+        return value == NO_ENTRY ? null : value;
+    }
+}
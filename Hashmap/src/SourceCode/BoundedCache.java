@@ -0,0 +1,510 @@
+package SourceCode;
+
+import java.util.ConcurrentModificationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * 有容量上限的缓存  用ChainedHashmap留下的newNode、afterNodeAccess、afterNodeInsertion、afterNodeRemoval回调实现淘汰，
+ * 做法和LinkedHashMap相同：Entry在Node的基础上多了前后指针，所有条目按访问顺序串成双向链表
+ *
+ * 容量可以按条目数（maximumSize）或按权重（maximumWeight+weigher，比如value的字节数）限制
+ * 两种淘汰策略：
+ * ①.LRU：只有一条链表，超过上限时淘汰链表头（最久没被访问的）
+ * ②.W-TinyLFU：链表分成三段，window（1%）、probation和protected（剩下的80%）
+ *   新条目先进window，window满了就把最老的挪到probation；probation里的条目再被访问时升到protected，
+ *   protected满了把最老的降回probation
+ *   超过上限时，刚从window出来的候选者和probation最老的条目比较FrequencySketch估计的访问频率，频率低的被淘汰
+ *   这样一次性扫描大量冷数据时，新来的冷条目挤不掉高频的热条目
+ *
+ * 过期：expireAfterWrite按写入时间、expireAfterAccess按最后访问时间，过期的条目在读的时候发现就删除，
+ * 另外每次插入时从写入顺序链表和访问顺序链表的头部清理一部分，size()可能包含还没清理的过期条目
+ *
+ * 和ChainedHashmap一样不是线程安全的，多线程使用StripedCache
+ */
+public class BoundedCache<K, V> extends ChainedHashmap<K, V> {
+
+    public enum Policy {
+        LRU, TINY_LFU
+    }
+
+    static final int WINDOW = 0;
+    static final int PROBATION = 1;
+    static final int PROTECTED = 2;
+
+    static final class Entry<K, V> extends ChainedHashmap.Node<K, V> {
+        //所在队列里的前后条目
+        Entry<K, V> before, after;
+        //写入顺序链表里的前后条目  只在设置了expireAfterWrite时使用
+        Entry<K, V> writeBefore, writeAfter;
+        int weight;
+        int queue;
+        long writeTime;
+        long accessTime;
+
+        Entry(int hash, K key, V value, Node<K, V> next) {
+            super(hash, key, value, next);
+        }
+    }
+
+    final Policy policy;
+    final long maximum;
+    final ToIntBiFunction<? super K, ? super V> weigher;
+    final long expireAfterWriteNanos;
+    final long expireAfterAccessNanos;
+    final LongSupplier ticker;
+    final long windowMaximum;
+    final long protectedMaximum;
+    final FrequencySketch sketch;
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    final Entry<K, V>[] heads = (Entry<K, V>[]) new Entry[3];
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    final Entry<K, V>[] tails = (Entry<K, V>[]) new Entry[3];
+    final long[] queueWeight = new long[3];
+    Entry<K, V> writeHead, writeTail;
+    long weightedSize;
+    //put正在修改已有条目的值  afterNodeAccess据此重新计算权重和写入时间
+    boolean writing;
+    //刚写入的、单独就超过上限的条目  evict先淘汰它
+    Entry<K, V> overweight;
+
+    long hitCount;
+    long missCount;
+    long evictionCount;
+    long evictionWeight;
+    long expiredCount;
+
+    BoundedCache(Builder<K, V> builder, long maximum) {
+        super(builder.initialCapacity, DEFAULT_LOAD_FACTOR, false);
+        this.policy = builder.policy;
+        this.maximum = maximum;
+        this.weigher = builder.weigher;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        this.ticker = builder.ticker;
+        if (policy == Policy.TINY_LFU) {
+            windowMaximum = Math.max(1, maximum / 100);
+            protectedMaximum = (maximum - windowMaximum) * 8 / 10;
+            sketch = new FrequencySketch(maximum);
+        } else {
+            windowMaximum = maximum;
+            protectedMaximum = 0;
+            sketch = null;
+        }
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    public Policy policy() {
+        return policy;
+    }
+
+    public long maximum() {
+        return maximum;
+    }
+
+    //所有条目的权重之和  没有weigher时等于size()
+    public long weightedSize() {
+        return weightedSize;
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hitCount, missCount, evictionCount, evictionWeight, expiredCount);
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> p = getNode(hashOf(key), key);
+        if (p == null) {
+            missCount++;
+            return null;
+        }
+        Entry<K, V> e = (Entry<K, V>) p;
+        if (expiring() && isExpired(e, ticker.getAsLong())) {
+            expireEntry(e);
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        afterNodeAccess(e);
+        return e.value;
+    }
+
+    //没有命中时用loader加载并放进缓存  loader返回null时不缓存
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value == null && (value = loader.apply(key)) != null)
+            put(key, value);
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Node<K, V> p = getNode(hashOf(key), key);
+        return p != null && !(expiring() && isExpired((Entry<K, V>) p, ticker.getAsLong()));
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return write(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return write(key, value, true);
+    }
+
+    private V write(K key, V value, boolean onlyIfAbsent) {
+        int hash = hashOf(key);
+        //已经过期的旧值不能当作旧值返回
+        if (expiring()) {
+            Node<K, V> p = getNode(hash, key);
+            if (p != null && isExpired((Entry<K, V>) p, ticker.getAsLong()))
+                expireEntry((Entry<K, V>) p);
+        }
+        writing = !onlyIfAbsent;
+        V oldValue;
+        try {
+            oldValue = putVal(hash, key, value, onlyIfAbsent, true);
+        } finally {
+            writing = false;
+        }
+        //修改已有条目可能让权重变大
+        evict();
+        return oldValue;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        for (int q = 0; q < 3; q++) {
+            heads[q] = tails[q] = null;
+            queueWeight[q] = 0;
+        }
+        writeHead = writeTail = null;
+        overweight = null;
+        weightedSize = 0;
+    }
+
+    //遍历时跳过已经过期的条目
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (!expiring()) {
+            super.forEach(action);
+            return;
+        }
+        long now = ticker.getAsLong();
+        int mc = modCount;
+        for (int q = 0; q < 3; q++)
+            for (Entry<K, V> e = heads[q]; e != null; e = e.after)
+                if (!isExpired(e, now))
+                    action.accept(e.key, e.value);
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    //清理链表头部已经过期的条目
+    public void cleanUp() {
+        expire();
+    }
+
+    @Override
+    Node<K, V> newNode(int hash, K key, V value, Node<K, V> next) {
+        Entry<K, V> e = new Entry<>(hash, key, value, next);
+        e.weight = weigh(key, value);
+        if (expiring())
+            e.writeTime = e.accessTime = ticker.getAsLong();
+        linkLast(e, WINDOW);
+        if (expireAfterWriteNanos > 0)
+            linkWrite(e);
+        weightedSize += e.weight;
+        if (e.weight > maximum)
+            overweight = e;
+        if (sketch != null)
+            sketch.increment(hash);
+        return e;
+    }
+
+    @Override
+    void afterNodeAccess(Node<K, V> p) {
+        Entry<K, V> e = (Entry<K, V>) p;
+        if (expiring()) {
+            long now = ticker.getAsLong();
+            e.accessTime = now;
+            if (writing) {
+                e.writeTime = now;
+                if (expireAfterWriteNanos > 0) {
+                    unlinkWrite(e);
+                    linkWrite(e);
+                }
+            }
+        }
+        if (writing) {
+            int weight = weigh(e.key, e.value);
+            queueWeight[e.queue] += weight - e.weight;
+            weightedSize += weight - e.weight;
+            e.weight = weight;
+            if (weight > maximum)
+                overweight = e;
+        }
+        if (sketch != null)
+            sketch.increment(e.hash);
+        if (policy == Policy.LRU || e.queue != PROBATION) {
+            if (tails[e.queue] != e) {
+                unlink(e);
+                linkLast(e, e.queue);
+            }
+        } else {
+            //probation里的条目再次被访问  升到protected
+            unlink(e);
+            linkLast(e, PROTECTED);
+            while (queueWeight[PROTECTED] > protectedMaximum && heads[PROTECTED] != e) {
+                Entry<K, V> demoted = heads[PROTECTED];
+                unlink(demoted);
+                linkLast(demoted, PROBATION);
+            }
+        }
+    }
+
+    @Override
+    void afterNodeInsertion(boolean evict) {
+        if (evict) {
+            expire();
+            evict();
+        }
+    }
+
+    @Override
+    void afterNodeRemoval(Node<K, V> p) {
+        Entry<K, V> e = (Entry<K, V>) p;
+        unlink(e);
+        if (expireAfterWriteNanos > 0)
+            unlinkWrite(e);
+        weightedSize -= e.weight;
+        if (e == overweight)
+            overweight = null;
+    }
+
+    //淘汰条目直到总权重不超过上限
+    void evict() {
+        //单独就超过上限的条目无论如何都放不下  直接淘汰它，
+        //否则LRU会先把比它老的条目全部淘汰，TINY_LFU在probation空了之后也会去淘汰protected里的条目
+        if (overweight != null)
+            evictEntry(overweight);
+        if (policy == Policy.LRU) {
+            while (weightedSize > maximum && heads[WINDOW] != null)
+                evictEntry(heads[WINDOW]);
+            return;
+        }
+        while (queueWeight[WINDOW] > windowMaximum) {
+            Entry<K, V> e = heads[WINDOW];
+            unlink(e);
+            linkLast(e, PROBATION);
+        }
+        while (weightedSize > maximum) {
+            //候选者是最近从window出来的，受害者是probation里最老的
+            Entry<K, V> victim = heads[PROBATION];
+            Entry<K, V> candidate = tails[PROBATION];
+            if (victim == null) {
+                victim = heads[PROTECTED] != null ? heads[PROTECTED] : heads[WINDOW];
+                if (victim == null)
+                    return;
+                evictEntry(victim);
+            } else if (victim == candidate) {
+                evictEntry(victim);
+            } else {
+                evictEntry(sketch.frequency(candidate.hash) > sketch.frequency(victim.hash) ? victim : candidate);
+            }
+        }
+    }
+
+    private void evictEntry(Entry<K, V> e) {
+        evictionCount++;
+        evictionWeight += e.weight;
+        removeNode(e.hash, e.key);
+    }
+
+    private void expireEntry(Entry<K, V> e) {
+        expiredCount++;
+        removeNode(e.hash, e.key);
+    }
+
+    //写入顺序链表是严格按写入时间排的；访问顺序的队列里probation是从另外两段挪过来的，只是大致有序，剩下的留给读的时候发现
+    private void expire() {
+        if (!expiring())
+            return;
+        long now = ticker.getAsLong();
+        if (expireAfterWriteNanos > 0)
+            while (writeHead != null && now - writeHead.writeTime >= expireAfterWriteNanos)
+                expireEntry(writeHead);
+        if (expireAfterAccessNanos > 0)
+            for (int q = 0; q < 3; q++)
+                while (heads[q] != null && now - heads[q].accessTime >= expireAfterAccessNanos)
+                    expireEntry(heads[q]);
+    }
+
+    private boolean expiring() {
+        return expireAfterWriteNanos > 0 || expireAfterAccessNanos > 0;
+    }
+
+    private boolean isExpired(Entry<K, V> e, long now) {
+        return (expireAfterWriteNanos > 0 && now - e.writeTime >= expireAfterWriteNanos)
+                || (expireAfterAccessNanos > 0 && now - e.accessTime >= expireAfterAccessNanos);
+    }
+
+    private int weigh(K key, V value) {
+        if (weigher == null)
+            return 1;
+        int weight = weigher.applyAsInt(key, value);
+        if (weight < 0)
+            throw new IllegalArgumentException("Negative weight: " + weight);
+        return weight;
+    }
+
+    private void linkLast(Entry<K, V> e, int queue) {
+        e.queue = queue;
+        e.before = tails[queue];
+        e.after = null;
+        if (tails[queue] == null)
+            heads[queue] = e;
+        else
+            tails[queue].after = e;
+        tails[queue] = e;
+        queueWeight[queue] += e.weight;
+    }
+
+    private void unlink(Entry<K, V> e) {
+        int queue = e.queue;
+        if (e.before == null)
+            heads[queue] = e.after;
+        else
+            e.before.after = e.after;
+        if (e.after == null)
+            tails[queue] = e.before;
+        else
+            e.after.before = e.before;
+        e.before = e.after = null;
+        queueWeight[queue] -= e.weight;
+    }
+
+    private void linkWrite(Entry<K, V> e) {
+        e.writeBefore = writeTail;
+        e.writeAfter = null;
+        if (writeTail == null)
+            writeHead = e;
+        else
+            writeTail.writeAfter = e;
+        writeTail = e;
+    }
+
+    private void unlinkWrite(Entry<K, V> e) {
+        if (e.writeBefore == null)
+            writeHead = e.writeAfter;
+        else
+            e.writeBefore.writeAfter = e.writeAfter;
+        if (e.writeAfter == null)
+            writeTail = e.writeBefore;
+        else
+            e.writeAfter.writeBefore = e.writeBefore;
+        e.writeBefore = e.writeAfter = null;
+    }
+
+    /**
+     * BoundedCache和StripedCache的配置
+     * maximumSize和maximumWeight必须且只能设置一个，maximumWeight必须配合weigher使用
+     */
+    public static final class Builder<K, V> {
+        Policy policy = Policy.TINY_LFU;
+        long maximumSize = -1;
+        long maximumWeight = -1;
+        ToIntBiFunction<? super K, ? super V> weigher;
+        long expireAfterWriteNanos;
+        long expireAfterAccessNanos;
+        LongSupplier ticker = System::nanoTime;
+        int initialCapacity = DEFAULT_INITIAL_CAPACITY;
+
+        Builder() {
+        }
+
+        public Builder<K, V> maximumSize(long maximumSize) {
+            if (maximumSize < 0)
+                throw new IllegalArgumentException("Illegal maximum size: " + maximumSize);
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        public Builder<K, V> maximumWeight(long maximumWeight) {
+            if (maximumWeight < 0)
+                throw new IllegalArgumentException("Illegal maximum weight: " + maximumWeight);
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        public Builder<K, V> weigher(ToIntBiFunction<? super K, ? super V> weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        public Builder<K, V> policy(Policy policy) {
+            this.policy = policy;
+            return this;
+        }
+
+        public Builder<K, V> expireAfterWrite(long duration, TimeUnit unit) {
+            this.expireAfterWriteNanos = checkDuration(unit.toNanos(duration));
+            return this;
+        }
+
+        public Builder<K, V> expireAfterAccess(long duration, TimeUnit unit) {
+            this.expireAfterAccessNanos = checkDuration(unit.toNanos(duration));
+            return this;
+        }
+
+        //时间来源  默认System.nanoTime
+        public Builder<K, V> ticker(LongSupplier ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public Builder<K, V> initialCapacity(int initialCapacity) {
+            if (initialCapacity < 0)
+                throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+            this.initialCapacity = initialCapacity;
+            return this;
+        }
+
+        public BoundedCache<K, V> build() {
+            return new BoundedCache<>(this, maximum());
+        }
+
+        //stripes个分段  每段的上限是总上限的1/stripes
+        public StripedCache<K, V> buildStriped(int stripes) {
+            if (stripes <= 0)
+                throw new IllegalArgumentException("Illegal stripe count: " + stripes);
+            maximum();
+            return new StripedCache<>(this, stripes);
+        }
+
+        long maximum() {
+            if ((maximumSize < 0) == (maximumWeight < 0))
+                throw new IllegalStateException("Exactly one of maximumSize and maximumWeight must be set");
+            if (maximumWeight >= 0 && weigher == null)
+                throw new IllegalStateException("maximumWeight requires a weigher");
+            if (maximumSize >= 0 && weigher != null)
+                throw new IllegalStateException("weigher requires maximumWeight");
+            return maximumSize >= 0 ? maximumSize : maximumWeight;
+        }
+
+        private static long checkDuration(long nanos) {
+            if (nanos <= 0)
+                throw new IllegalArgumentException("Illegal duration: " + nanos + "ns");
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package SourceCode;
+
+/**
+ * 缓存的命中统计  由BoundedCache.stats()生成，之后不会再变
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long evictionWeight;
+    private final long expiredCount;
+
+    CacheStats(long hitCount, long missCount, long evictionCount, long evictionWeight, long expiredCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.evictionWeight = evictionWeight;
+        this.expiredCount = expiredCount;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    //还没有请求时命中率为1
+    public double getHitRate() {
+        long requests = getRequestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    //因为超过容量被淘汰的条目数和它们的总权重
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getEvictionWeight() {
+        return evictionWeight;
+    }
+
+    //因为过期被删除的条目数
+    public long getExpiredCount() {
+        return expiredCount;
+    }
+
+    //合并多个分段的统计
+    public CacheStats plus(CacheStats other) {
+        return new CacheStats(hitCount + other.hitCount, missCount + other.missCount,
+                evictionCount + other.evictionCount, evictionWeight + other.evictionWeight,
+                expiredCount + other.expiredCount);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d misses=%d hitRate=%.4f evictions=%d evictionWeight=%d expired=%d",
+                hitCount, missCount, getHitRate(), evictionCount, evictionWeight, expiredCount);
+    }
+}
@@ -0,0 +1,898 @@
+package SourceCode;
+
+import java.lang.management.ManagementFactory;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.StreamSupport;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * 可以实际运行的拉链法哈希表  结构和Hashmap（jdk1.8 HashMap）一致：Node数组+链表，hash、putVal、resize的写法也相同
+ * 和Hashmap的区别是链表不会转红黑树，另外多了渐进式扩容模式
+ *
+ * 渐进式扩容（参考Redis的rehash）
+ * Hashmap.resize()一次性把所有桶拆成lo/hi两条链搬到新数组，上千万条目时某一次put会卡住几十毫秒
+ * 打开incrementalResize后，扩容时只分配新数组，旧数组保留下来，之后的每次操作顺带迁移几个旧桶，直到全部迁完
+ * 迁移期间：
+ * ①.get先看key所在的旧桶迁走了没有，没迁走就在旧桶里找，迁走了就在新数组里找
+ * ②.put/remove先把key所在的旧桶迁走，再在新数组上操作，这样新数组里的结果总是最新的
+ * ③.迁移期间又需要扩容时（很少见），先把剩下的旧桶一次迁完
+ * 每次操作的额外开销是有上限的，所以put的延迟不会随着表变大出现尖峰
+ *
+ * 防哈希洪水
+ * hash()只是h ^ (h >>> 16)，攻击者很容易构造出hashCode相同的String（比如"Aa"和"BB"），让所有键落进同一个桶，
+ * Hashmap的红黑树也只对Comparable的键有效；这里每次插入时统计链表长度，
+ * 自上次扩容以来往长度达到COLLISION_THRESHOLD的链表上插入了COLLISION_LIMIT次，说明链表一直很长，
+ * 就自动切换到带随机密钥的SipHash计算String键的hash，并就地重新分布所有节点；也可以调用useKeyedHashing主动切换
+ * 其他类型的键仍然用hashCode，byte[]的hashCode是对象地址，本身不受这种攻击
+ *
+ * 批量加载
+ * Hashmap(Map m)和putAll逐个调用putVal，表会一路扩容上去；ensureCapacity和putAll先按最终大小一次把数组分配好
+ * bulkLoad从数组一次构建出整张表，条目很多时在ForkJoinPool上并行：按桶下标的高位把数组分成若干段，
+ * 每段是一段连续的桶，由一个任务独占构建，不需要加锁
+ *
+ * 统计
+ * enableStats之后记录每次查找比较的节点数、扩容次数和耗时、负载的变化（扩容后和每隔一定次数的插入/删除采样），statsSnapshot()再扫描table得到链表长度分布，
+ * 也可以用registerStatsMBean注册到JMX；没打开时只有一次判空的开销
+ *
+ * 并行遍历
+ * spliterator()按桶的下标区间二分table，forEach/reduceValues/search(parallelismThreshold, ...)在它的基础上用并行流执行，
+ * 跑在ForkJoinPool.commonPool上；条目数小于parallelismThreshold时顺序执行（参数含义同ConcurrentHashMap）
+ *
+ * afterNodeAccess、afterNodeInsertion、afterNodeRemoval和Hashmap里一样是留给子类的回调（比如按访问顺序淘汰）
+ */
+public class ChainedHashmap<K, V> {
+
+    static final int DEFAULT_INITIAL_CAPACITY = 1 << 4;
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+    static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    //渐进式扩容时每次操作最多迁移的非空桶数
+    static final int REHASH_STEP = 4;
+    //每次操作最多检查的空桶数  防止连续很多空桶时一次操作扫描太多
+    static final int REHASH_EMPTY_VISITS = REHASH_STEP * 10;
+    //插入后链表长度达到这个值算一次碰撞  同Hashmap.TREEIFY_THRESHOLD
+    static final int COLLISION_THRESHOLD = 8;
+    //两次扩容之间碰撞达到这个次数就切换到SipHash  负载因子0.75时随机的hash几乎不可能出现
+    static final int COLLISION_LIMIT = 16;
+    //bulkLoad条目数达到这个值才并行构建
+    static final int PARALLEL_BULK_THRESHOLD = 1 << 17;
+
+    static class Node<K, V> implements Map.Entry<K, V> {
+        //不是final  切换到SipHash时要就地改写
+        int hash;
+        final K key;
+        V value;
+        Node<K, V> next;
+
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        public final K getKey() { return key; }
+
+        public final V getValue() { return value; }
+
+        public final String toString() { return key + "=" + value; }
+
+        public final int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        public final V setValue(V newValue) {
+            V oldValue = value;
+            value = newValue;
+            return oldValue;
+        }
+
+        public final boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (o instanceof Map.Entry) {
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+            }
+            return false;
+        }
+    }
+
+    transient Node<K, V>[] table;
+    //渐进式扩容中的旧数组  没在扩容时为null
+    transient Node<K, V>[] oldTable;
+    //旧数组中下一个要检查的桶  它之前的桶都已经迁完
+    transient int rehashIndex;
+    transient int size;
+    transient int modCount;
+    int threshold;
+    final float loadFactor;
+    final boolean incrementalResize;
+    //String键是否用SipHash  切换后不会再切回去
+    transient boolean keyedHashing;
+    transient long hashSeed0, hashSeed1;
+    //自上次扩容以来的碰撞次数
+    transient int collisions;
+    //没打开统计时为null  JMX线程会通过HashmapStatsBean.setStatsEnabled修改，所以是volatile
+    transient volatile HashmapCounters stats;
+
+    public ChainedHashmap() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR, false);
+    }
+
+    public ChainedHashmap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR, false);
+    }
+
+    public ChainedHashmap(int initialCapacity, float loadFactor, boolean incrementalResize) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        if (initialCapacity > MAXIMUM_CAPACITY)
+            initialCapacity = MAXIMUM_CAPACITY;
+        if (loadFactor <= 0 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        this.loadFactor = loadFactor;
+        this.incrementalResize = incrementalResize;
+        //同Hashmap  数组延迟到第一次put时再分配，在此之前threshold存放初始容量
+        this.threshold = tableSizeFor(initialCapacity);
+    }
+
+    static final int tableSizeFor(int cap) {
+        int n = cap - 1;
+        n |= n >>> 1;
+        n |= n >>> 2;
+        n |= n >>> 4;
+        n |= n >>> 8;
+        n |= n >>> 16;
+        return (n < 0) ? 1 : (n >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY : n + 1;
+    }
+
+    static int hash(Object key) {
+        int h;
+        return (key == null) ? 0 : (h = key.hashCode()) ^ (h >>> 16);
+    }
+
+    //SipHash模式下的hash  只对String生效，其他键同hash(key)
+    static int keyedHash(Object key, long seed0, long seed1) {
+        if (key instanceof String) {
+            long h = SipHash.hash(seed0, seed1, (String) key);
+            return (int) (h ^ (h >>> 32));
+        }
+        return hash(key);
+    }
+
+    final int hashOf(Object key) {
+        return keyedHashing ? keyedHash(key, hashSeed0, hashSeed1) : hash(key);
+    }
+
+    public boolean isKeyedHashing() {
+        return keyedHashing;
+    }
+
+    /**
+     * 切换到SipHash模式  用随机密钥重新计算所有节点的hash并重新分布，节点对象保持不变（子类挂在节点上的链表不受影响）
+     */
+    public final void useKeyedHashing() {
+        if (keyedHashing)
+            return;
+        SecureRandom random = new SecureRandom();
+        hashSeed0 = random.nextLong();
+        hashSeed1 = random.nextLong();
+        keyedHashing = true;
+        collisions = 0;
+        if (table != null)
+            redistribute(table.length, true);
+    }
+
+    //把所有节点一次性放进容量为newCap的新数组  rehash为true时重新计算节点的hash
+    private void redistribute(int newCap, boolean rehash) {
+        completeRehash();
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        Node<K, V>[] newTab = (Node<K, V>[]) new Node[newCap];
+        for (Node<K, V> first : table) {
+            Node<K, V> next;
+            for (Node<K, V> e = first; e != null; e = next) {
+                next = e.next;
+                if (rehash)
+                    e.hash = hashOf(e.key);
+                int i = (newCap - 1) & e.hash;
+                e.next = newTab[i];
+                newTab[i] = e;
+            }
+        }
+        table = newTab;
+        ++modCount;
+    }
+
+    /**
+     * 保证放下expectedSize个条目时不需要扩容  容量的计算同Hashmap.putMapEntries
+     * 表已经分配且不够大时一次性迁到目标容量，而不是一次次翻倍
+     */
+    public void ensureCapacity(int expectedSize) {
+        if (expectedSize <= 0)
+            return;
+        float ft = ((float) expectedSize / loadFactor) + 1.0F;
+        int cap = tableSizeFor(ft < (float) MAXIMUM_CAPACITY ? (int) ft : MAXIMUM_CAPACITY);
+        if (table == null) {
+            if (cap > threshold)
+                threshold = cap;
+        } else if (cap > table.length) {
+            HashmapCounters s = stats;
+            long start = s != null ? System.nanoTime() : 0L;
+            redistribute(cap, false);
+            threshold = thresholdFor(cap);
+            if (s != null)
+                s.recordResize(System.nanoTime() - start, size, cap);
+        }
+    }
+
+    private int thresholdFor(int cap) {
+        float ft = (float) cap * loadFactor;
+        return cap < MAXIMUM_CAPACITY && ft < (float) MAXIMUM_CAPACITY ? (int) ft : Integer.MAX_VALUE;
+    }
+
+    //先按合并后的大小预分配  之后的put不会再扩容
+    public void putAll(ChainedHashmap<? extends K, ? extends V> m) {
+        ensureCapacity(size + m.size());
+        m.forEach(this::put);
+    }
+
+    public void putAll(Map<? extends K, ? extends V> m) {
+        ensureCapacity(size + m.size());
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet())
+            put(e.getKey(), e.getValue());
+    }
+
+    //从键值数组构建  同一个键出现多次时后面的值生效
+    public static <K, V> ChainedHashmap<K, V> bulkLoad(K[] keys, V[] values) {
+        return bulkLoad(keys, values, ForkJoinPool.commonPool());
+    }
+
+    public static <K, V> ChainedHashmap<K, V> bulkLoad(Collection<? extends Map.Entry<? extends K, ? extends V>> entries) {
+        Object[] keys = new Object[entries.size()];
+        Object[] values = new Object[keys.length];
+        int i = 0;
+        for (Map.Entry<? extends K, ? extends V> e : entries) {
+            keys[i] = e.getKey();
+            values[i++] = e.getValue();
+        }
+        return build(keys, values, ForkJoinPool.commonPool());
+    }
+
+    public static <K, V> ChainedHashmap<K, V> bulkLoad(K[] keys, V[] values, ForkJoinPool pool) {
+        if (keys.length != values.length)
+            throw new IllegalArgumentException("keys.length " + keys.length + " != values.length " + values.length);
+        return build(keys, values, pool);
+    }
+
+    /**
+     * 并行构建
+     * ①.每个任务负责输入的一块：计算hash，统计每段各有几个条目
+     * ②.按段、块的顺序求前缀和，得到每块的条目在每段中的起始位置
+     * ③.每个任务把自己那块的下标按段写进order，同一段里保持输入的顺序，所以重复的键仍然是后面的生效
+     * ④.每个任务构建一段桶
+     * 和putVal一样统计碰撞，String键碰撞太多时说明遇到了哈希洪水，放弃这次构建，切换到SipHash后重新构建
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> ChainedHashmap<K, V> build(Object[] keys, Object[] values, ForkJoinPool pool) {
+        int count = keys.length;
+        ChainedHashmap<K, V> map = new ChainedHashmap<>();
+        map.ensureCapacity(count);
+        if (count < PARALLEL_BULK_THRESHOLD || pool.getParallelism() < 2) {
+            for (int i = 0; i < count; i++)
+                map.put((K) keys[i], (V) values[i]);
+            return map;
+        }
+        if (!map.buildParallel(keys, values, pool)) {
+            map = new ChainedHashmap<>();
+            map.useKeyedHashing();
+            map.ensureCapacity(count);
+            map.buildParallel(keys, values, pool);
+        }
+        return map;
+    }
+
+    //在空表上并行构建  遇到String键的哈希洪水时返回false
+    @SuppressWarnings("unchecked")
+    private boolean buildParallel(Object[] keys, Object[] values, ForkJoinPool pool) {
+        int count = keys.length;
+        int cap = threshold;
+        @SuppressWarnings("rawtypes")
+        Node<K, V>[] tab = (Node<K, V>[]) new Node[cap];
+        int segments = Math.min(tableSizeFor(pool.getParallelism() * 4), cap);
+        int shift = Integer.numberOfTrailingZeros(cap) - Integer.numberOfTrailingZeros(segments);
+        int blocks = pool.getParallelism() * 4;
+        int blockSize = (count + blocks - 1) / blocks;
+        int[] hashes = new int[count];
+        int[][] offsets = new int[blocks][segments];
+        runAll(pool, blocks, b -> {
+            for (int i = b * blockSize, end = Math.min(count, i + blockSize); i < end; i++) {
+                int h = hashOf(keys[i]);
+                hashes[i] = h;
+                offsets[b][(h & (cap - 1)) >>> shift]++;
+            }
+        });
+        int[] segmentStart = new int[segments + 1];
+        int position = 0;
+        for (int s = 0; s < segments; s++) {
+            segmentStart[s] = position;
+            for (int b = 0; b < blocks; b++) {
+                int n = offsets[b][s];
+                offsets[b][s] = position;
+                position += n;
+            }
+        }
+        segmentStart[segments] = position;
+        int[] order = new int[count];
+        runAll(pool, blocks, b -> {
+            int[] next = offsets[b];
+            for (int i = b * blockSize, end = Math.min(count, i + blockSize); i < end; i++)
+                order[next[(hashes[i] & (cap - 1)) >>> shift]++] = i;
+        });
+        int[] sizes = new int[segments];
+        int[] collisions = new int[segments];
+        AtomicBoolean flooded = new AtomicBoolean();
+        runAll(pool, segments, s -> {
+            for (int j = segmentStart[s]; j < segmentStart[s + 1] && !flooded.get(); j++) {
+                int i = order[j];
+                int h = hashes[i];
+                K key = (K) keys[i];
+                int index = h & (cap - 1);
+                Node<K, V> p = tab[index];
+                if (p == null) {
+                    tab[index] = newNode(h, key, (V) values[i], null);
+                    sizes[s]++;
+                    continue;
+                }
+                for (int binCount = 1; ; ++binCount) {
+                    Object k;
+                    if (p.hash == h && ((k = p.key) == key || (key != null && key.equals(k)))) {
+                        p.value = (V) values[i];
+                        break;
+                    }
+                    if (p.next == null) {
+                        p.next = newNode(h, key, (V) values[i], null);
+                        sizes[s]++;
+                        if (binCount + 1 >= COLLISION_THRESHOLD && ++collisions[s] >= COLLISION_LIMIT
+                                && key instanceof String && !keyedHashing)
+                            flooded.set(true);
+                        break;
+                    }
+                    p = p.next;
+                }
+            }
+        });
+        if (flooded.get())
+            return false;
+        table = tab;
+        threshold = thresholdFor(cap);
+        for (int s = 0; s < segments; s++)
+            size += sizes[s];
+        ++modCount;
+        return true;
+    }
+
+    //在pool上并行执行body(0)到body(n-1)，全部完成后返回  任务抛出的异常会在这里重新抛出
+    private static void runAll(ForkJoinPool pool, int n, IntConsumer body) {
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                List<ForkJoinTask<?>> tasks = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    int id = i;
+                    tasks.add(ForkJoinTask.adapt(() -> body.accept(id)));
+                }
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    //是否处在渐进式扩容的迁移过程中
+    public boolean isRehashing() {
+        return oldTable != null;
+    }
+
+    public V get(Object key) {
+        Node<K, V> e = getNode(hashOf(key), key);
+        if (e == null)
+            return null;
+        afterNodeAccess(e);
+        return e.value;
+    }
+
+    public boolean containsKey(Object key) {
+        return getNode(hashOf(key), key) != null;
+    }
+
+    final Node<K, V> getNode(int hash, Object key) {
+        rehashStep();
+        Node<K, V>[] tab = oldTable;
+        Node<K, V> first;
+        //key所在的旧桶还没迁走，就在旧桶里找
+        if (tab == null || (first = tab[(tab.length - 1) & hash]) == null) {
+            if ((tab = table) == null)
+                return null;
+            first = tab[(tab.length - 1) & hash];
+        }
+        HashmapCounters s = stats;
+        int probes = 0;
+        for (Node<K, V> e = first; e != null; e = e.next) {
+            Object k;
+            probes++;
+            if (e.hash == hash && ((k = e.key) == key || (key != null && key.equals(k)))) {
+                if (s != null)
+                    s.recordGet(probes, true);
+                return e;
+            }
+        }
+        if (s != null)
+            s.recordGet(probes, false);
+        return null;
+    }
+
+    public V put(K key, V value) {
+        return putVal(hashOf(key), key, value, false, true);
+    }
+
+    public V putIfAbsent(K key, V value) {
+        return putVal(hashOf(key), key, value, true, true);
+    }
+
+    final V putVal(int hash, K key, V value, boolean onlyIfAbsent, boolean evict) {
+        Node<K, V>[] tab;
+        Node<K, V> p;
+        int n, i;
+        if ((tab = table) == null || (n = tab.length) == 0)
+            n = (tab = resize()).length;
+        else if (oldTable != null) {
+            rehashStep();
+            migrateBucketOf(hash);
+        }
+        if ((p = tab[i = (n - 1) & hash]) == null)
+            tab[i] = newNode(hash, key, value, null);
+        else {
+            Node<K, V> e;
+            Object k;
+            for (int binCount = 1; ; ++binCount) {
+                if (p.hash == hash && ((k = p.key) == key || (key != null && key.equals(k)))) {
+                    e = p;
+                    break;
+                }
+                if ((e = p.next) == null) {
+                    p.next = newNode(hash, key, value, null);
+                    if (binCount + 1 >= COLLISION_THRESHOLD)
+                        collisions++;
+                    break;
+                }
+                p = e;
+            }
+            if (e != null) {
+                V oldValue = e.value;
+                if (!onlyIfAbsent || oldValue == null)
+                    e.value = value;
+                afterNodeAccess(e);
+                return oldValue;
+            }
+        }
+        ++modCount;
+        if (++size > threshold)
+            resize();
+        else if (collisions >= COLLISION_LIMIT && !keyedHashing && key instanceof String)
+            useKeyedHashing();
+        HashmapCounters s = stats;
+        if (s != null)
+            s.recordModification(size, table.length);
+        afterNodeInsertion(evict);
+        return null;
+    }
+
+    public V remove(Object key) {
+        Node<K, V> e = removeNode(hashOf(key), key);
+        return e == null ? null : e.value;
+    }
+
+    final Node<K, V> removeNode(int hash, Object key) {
+        Node<K, V>[] tab;
+        if ((tab = table) == null)
+            return null;
+        if (oldTable != null) {
+            rehashStep();
+            migrateBucketOf(hash);
+        }
+        int index = (tab.length - 1) & hash;
+        for (Node<K, V> e = tab[index], pred = null; e != null; pred = e, e = e.next) {
+            Object k;
+            if (e.hash == hash && ((k = e.key) == key || (key != null && key.equals(k)))) {
+                if (pred == null)
+                    tab[index] = e.next;
+                else
+                    pred.next = e.next;
+                ++modCount;
+                --size;
+                HashmapCounters s = stats;
+                if (s != null)
+                    s.recordModification(size, tab.length);
+                afterNodeRemoval(e);
+                return e;
+            }
+        }
+        return null;
+    }
+
+    public void clear() {
+        modCount++;
+        if (table != null && size > 0) {
+            size = 0;
+            for (int i = 0; i < table.length; ++i)
+                table[i] = null;
+        }
+        oldTable = null;
+        rehashIndex = 0;
+    }
+
+    //遍历所有键值对  先把迁移中的旧桶迁完，否则action里的get会让节点在两个数组间移动
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        completeRehash();
+        int mc = modCount;
+        if (table != null)
+            for (Node<K, V> first : table)
+                for (Node<K, V> e = first; e != null; e = e.next)
+                    action.accept(e.key, e.value);
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * 按桶的下标区间切分的Spliterator  同HashMap.EntrySpliterator
+     * 先把迁移中的旧桶迁完，这样所有节点都在table里；这里没有红黑树，桶里都是链表
+     * 遍历期间不能修改map，否则抛ConcurrentModificationException
+     */
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        completeRehash();
+        Node<K, V>[] tab = table;
+        return new EntrySpliterator<>(this, tab, 0, tab == null ? 0 : tab.length, size, modCount);
+    }
+
+    //条目数达到parallelismThreshold时在commonPool上并行遍历  action会被多个线程同时调用，不能修改map
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+        StreamSupport.stream(spliterator(), size >= parallelismThreshold)
+                .forEach(e -> action.accept(e.getKey(), e.getValue()));
+    }
+
+    /**
+     * 用reducer合并所有非null的值  没有值时返回null
+     * reducer需要满足结合律，不能返回null
+     */
+    public V reduceValues(long parallelismThreshold, BiFunction<? super V, ? super V, ? extends V> reducer) {
+        Optional<V> result = StreamSupport.stream(spliterator(), size >= parallelismThreshold)
+                .map(Map.Entry::getValue)
+                .filter(Objects::nonNull)
+                .reduce((a, b) -> reducer.apply(a, b));
+        return result.orElse(null);
+    }
+
+    /**
+     * 返回searchFunction对任意一个条目的非null结果  都为null时返回null
+     * 找到一个后其余的任务会尽快停止，并行时返回的不一定是遍历顺序上的第一个
+     */
+    public <U> U search(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        Optional<U> result = StreamSupport.stream(spliterator(), size >= parallelismThreshold)
+                .<U>map(e -> searchFunction.apply(e.getKey(), e.getValue()))
+                .filter(Objects::nonNull)
+                .findAny();
+        return result.orElse(null);
+    }
+
+    static final class EntrySpliterator<K, V> implements Spliterator<Map.Entry<K, V>> {
+        final ChainedHashmap<K, V> map;
+        final Node<K, V>[] tab;
+        //下一个要遍历的桶和区间的终点（不含）
+        int index;
+        final int fence;
+        //估计的条目数  切分时减半
+        int est;
+        final int expectedModCount;
+        //当前桶里下一个要遍历的节点
+        Node<K, V> current;
+
+        EntrySpliterator(ChainedHashmap<K, V> map, Node<K, V>[] tab, int origin, int fence, int est, int expectedModCount) {
+            this.map = map;
+            this.tab = tab;
+            this.index = origin;
+            this.fence = fence;
+            this.est = est;
+            this.expectedModCount = expectedModCount;
+        }
+
+        //把前一半桶分出去
+        public EntrySpliterator<K, V> trySplit() {
+            int lo = index, mid = (lo + fence) >>> 1;
+            if (lo >= mid || current != null)
+                return null;
+            index = mid;
+            return new EntrySpliterator<>(map, tab, lo, mid, est >>>= 1, expectedModCount);
+        }
+
+        public void forEachRemaining(Consumer<? super Map.Entry<K, V>> action) {
+            if (action == null)
+                throw new NullPointerException();
+            Node<K, V> p = current;
+            current = null;
+            int i = index;
+            index = fence;
+            for (; ; ) {
+                if (p == null) {
+                    if (i >= fence)
+                        break;
+                    p = tab[i++];
+                } else {
+                    action.accept(p);
+                    p = p.next;
+                }
+            }
+            if (map.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+            if (action == null)
+                throw new NullPointerException();
+            while (current != null || index < fence) {
+                if (current == null) {
+                    current = tab[index++];
+                } else {
+                    Node<K, V> e = current;
+                    current = current.next;
+                    action.accept(e);
+                    if (map.modCount != expectedModCount)
+                        throw new ConcurrentModificationException();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public long estimateSize() {
+            return est;
+        }
+
+        //没切分过时est就是准确的条目数
+        public int characteristics() {
+            return (est == map.size ? Spliterator.SIZED : 0) | Spliterator.DISTINCT;
+        }
+    }
+
+    /**
+     * 扩容  容量和阈值的计算同Hashmap.resize
+     * 普通模式下立即迁移所有桶；渐进式模式下只分配新数组，桶留给后续操作迁移
+     */
+    final Node<K, V>[] resize() {
+        HashmapCounters s = stats;
+        long start = s != null ? System.nanoTime() : 0L;
+        //上一轮还没迁完  先全部迁完
+        completeRehash();
+        collisions = 0;
+        Node<K, V>[] oldTab = table;
+        int oldCap = (oldTab == null) ? 0 : oldTab.length;
+        int oldThr = threshold;
+        int newCap, newThr = 0;
+        if (oldCap > 0) {
+            if (oldCap >= MAXIMUM_CAPACITY) {
+                threshold = Integer.MAX_VALUE;
+                return oldTab;
+            } else if ((newCap = oldCap << 1) < MAXIMUM_CAPACITY && oldCap >= DEFAULT_INITIAL_CAPACITY)
+                newThr = oldThr << 1;
+        } else if (oldThr > 0)
+            newCap = oldThr;
+        else {
+            newCap = DEFAULT_INITIAL_CAPACITY;
+            newThr = (int) (DEFAULT_LOAD_FACTOR * DEFAULT_INITIAL_CAPACITY);
+        }
+        if (newThr == 0) {
+            float ft = (float) newCap * loadFactor;
+            newThr = (newCap < MAXIMUM_CAPACITY && ft < (float) MAXIMUM_CAPACITY ? (int) ft : Integer.MAX_VALUE);
+        }
+        threshold = newThr;
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        Node<K, V>[] newTab = (Node<K, V>[]) new Node[newCap];
+        table = newTab;
+        if (oldTab != null) {
+            oldTable = oldTab;
+            rehashIndex = 0;
+            if (!incrementalResize)
+                completeRehash();
+        }
+        //渐进式模式下这里只包含分配新数组的时间
+        if (s != null)
+            s.recordResize(System.nanoTime() - start, size, newCap);
+        return newTab;
+    }
+
+    //开始记录查找长度和扩容  已经打开时保留原来的计数
+    public void enableStats() {
+        if (stats == null)
+            stats = new HashmapCounters();
+    }
+
+    //停止记录并丢弃已有的计数
+    public void disableStats() {
+        stats = null;
+    }
+
+    public boolean isStatsEnabled() {
+        return stats != null;
+    }
+
+    /**
+     * 统计快照  扫描整个table统计链表长度，O(容量)
+     * 渐进式扩容中按新数组的桶统计，旧数组里还没迁走的节点算在它们迁移后所在的新桶里
+     */
+    public HashmapStats statsSnapshot() {
+        long[] histogram = new long[HashmapCounters.HISTOGRAM_SIZE];
+        Node<K, V>[] tab = table;
+        int maxChain = countChains(tab, oldTable, histogram);
+        long longChains = 0;
+        for (int length = COLLISION_THRESHOLD; length < histogram.length; length++)
+            longChains += histogram[length];
+        return new HashmapStats(size, tab == null ? 0 : tab.length, loadFactor, keyedHashing,
+                histogram, maxChain, longChains, stats);
+    }
+
+    //把t中每个桶的链表长度计入直方图  返回最长的链表长度
+    //oldTab不为null时是还在迁移的旧数组：已经迁走的旧桶是null，没迁走的旧桶里要落到t[i]的节点也算在t[i]里
+    private static int countChains(Node<?, ?>[] t, Node<?, ?>[] oldTab, long[] histogram) {
+        int maxChain = 0;
+        if (t == null)
+            return 0;
+        for (int i = 0; i < t.length; i++) {
+            int length = 0;
+            for (Node<?, ?> e = t[i]; e != null; e = e.next)
+                length++;
+            if (oldTab != null) {
+                for (Node<?, ?> e = oldTab[i & (oldTab.length - 1)]; e != null; e = e.next)
+                    if ((e.hash & (t.length - 1)) == i)
+                        length++;
+            }
+            histogram[Math.min(length, histogram.length - 1)]++;
+            maxChain = Math.max(maxChain, length);
+        }
+        return maxChain;
+    }
+
+    /**
+     * 把统计注册到平台MBeanServer  ObjectName为SourceCode:type=ChainedHashmap,name=name
+     * 注册会持有map的引用，不用时要用ManagementFactory.getPlatformMBeanServer().unregisterMBean注销
+     */
+    public ObjectName registerStatsMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("SourceCode:type=ChainedHashmap,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new HashmapStatsBean(this), objectName);
+        return objectName;
+    }
+
+    //把剩下的旧桶一次迁完
+    public final void completeRehash() {
+        Node<K, V>[] oldTab = oldTable;
+        if (oldTab == null)
+            return;
+        for (int j = rehashIndex; j < oldTab.length; j++)
+            if (oldTab[j] != null)
+                migrateBucket(j);
+        oldTable = null;
+        rehashIndex = 0;
+    }
+
+    /**
+     * 迁移几个旧桶  最多迁REHASH_STEP个非空桶、检查REHASH_EMPTY_VISITS个空桶
+     */
+    final void rehashStep() {
+        Node<K, V>[] oldTab = oldTable;
+        if (oldTab == null)
+            return;
+        int moved = 0, visited = 0;
+        int j = rehashIndex;
+        while (j < oldTab.length && moved < REHASH_STEP && visited < REHASH_EMPTY_VISITS) {
+            if (oldTab[j] != null) {
+                migrateBucket(j);
+                moved++;
+            } else {
+                visited++;
+            }
+            j++;
+        }
+        rehashIndex = j;
+        if (j == oldTab.length) {
+            oldTable = null;
+            rehashIndex = 0;
+        }
+    }
+
+    //key所在的旧桶如果还没迁走，先迁走它
+    final void migrateBucketOf(int hash) {
+        Node<K, V>[] oldTab = oldTable;
+        //rehashStep可能刚好迁完了最后一个桶
+        if (oldTab == null)
+            return;
+        int j = (oldTab.length - 1) & hash;
+        if (oldTab[j] != null)
+            migrateBucket(j);
+    }
+
+    /**
+     * 把旧桶j拆成lo/hi两条链放进新数组的j和j+oldCap  同Hashmap.resize中的链表拆分，保持原来的顺序
+     * 新数组的这两个桶只会从旧桶j迁入，迁入前一定是空的
+     */
+    final void migrateBucket(int j) {
+        Node<K, V>[] oldTab = oldTable;
+        Node<K, V>[] newTab = table;
+        int oldCap = oldTab.length;
+        Node<K, V> e = oldTab[j];
+        oldTab[j] = null;
+        Node<K, V> loHead = null, loTail = null;
+        Node<K, V> hiHead = null, hiTail = null;
+        Node<K, V> next;
+        do {
+            next = e.next;
+            if ((e.hash & oldCap) == 0) {
+                if (loTail == null)
+                    loHead = e;
+                else
+                    loTail.next = e;
+                loTail = e;
+            } else {
+                if (hiTail == null)
+                    hiHead = e;
+                else
+                    hiTail.next = e;
+                hiTail = e;
+            }
+        } while ((e = next) != null);
+        if (loTail != null) {
+            loTail.next = null;
+            newTab[j] = loHead;
+        }
+        if (hiTail != null) {
+            hiTail.next = null;
+            newTab[j + oldCap] = hiHead;
+        }
+    }
+
+    //以下是留给子类的回调  同Hashmap/LinkedHashMap
+    Node<K, V> newNode(int hash, K key, V value, Node<K, V> next) {
+        return new Node<>(hash, key, value, next);
+    }
+
+    void afterNodeAccess(Node<K, V> p) {
+    }
+
+    void afterNodeInsertion(boolean evict) {
+    }
+
+    void afterNodeRemoval(Node<K, V> p) {
+    }
+}
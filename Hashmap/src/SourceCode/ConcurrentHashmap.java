@@ -0,0 +1,477 @@
+package SourceCode;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程安全的Hashmap
+ * Hashmap不是线程安全的，用Collections.synchronizedMap包一层的话所有put都要抢同一把锁。
+ * 这里沿用Hashmap的桶数组+链表结构，并发控制参照jdk1.8的ConcurrentHashMap：
+ * ①.读操作（get）完全不加锁，Node的value和next都是volatile的
+ * ②.往空桶里放第一个节点时用CAS，不加锁
+ * ③.桶不为空时只锁这个桶的头节点（synchronized），不同桶之间的写互不影响
+ * ④.扩容时多个线程一起迁移：每个线程从transferIndex领取一段桶（stride）迁到新数组，
+ *   迁完的桶放一个ForwardingNode，读到它的get去新数组里找，写到它的put先帮忙迁移再重试
+ *
+ * 和Hashmap的区别：
+ * key和value都不能为null（否则get返回null时分不清是没有还是值为null）
+ * 链表过长时不转红黑树。putVal中链表长度达到TREEIFY_THRESHOLD并且数组小于MIN_TREEIFY_CAPACITY时，
+ * 和Hashmap.treeifyBin一样优先扩容；数组已经够大时保持链表，改用和ChainedHashmap一样的办法防哈希洪水：
+ * 自上次扩容以来往长链表上插入String键达到COLLISION_LIMIT次，就发起一次容量不变的迁移，
+ * 把所有节点迁到带随机密钥的KeyedTable里，之后String键的hash用SipHash计算（见hashOf）。
+ * hash跟着数组走，读写线程沿ForwardingNode进入新数组时重新计算hash
+ */
+public class ConcurrentHashmap<K, V> {
+
+    static final int DEFAULT_INITIAL_CAPACITY = 1 << 4;
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+    static final float LOAD_FACTOR = 0.75f;
+    static final int TREEIFY_THRESHOLD = 8;
+    static final int MIN_TREEIFY_CAPACITY = 64;
+    //两次扩容之间往长链表上插入String键达到这个次数就切换到SipHash  同ChainedHashmap.COLLISION_LIMIT
+    static final int COLLISION_LIMIT = 16;
+    //每个线程一次领取迁移的桶数
+    static final int MIN_TRANSFER_STRIDE = 16;
+    //ForwardingNode的hash  正常节点的hash都是非负数
+    static final int MOVED = -1;
+    static final int HASH_BITS = 0x7fffffff;
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    static class Node<K, V> {
+        final int hash;
+        final K key;
+        volatile V value;
+        volatile Node<K, V> next;
+
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /**
+     * 扩容时放在已迁移完的桶里，指向新数组
+     */
+    static final class ForwardingNode<K, V> extends Node<K, V> {
+        final AtomicReferenceArray<Node<K, V>> nextTable;
+
+        ForwardingNode(AtomicReferenceArray<Node<K, V>> nextTable) {
+            super(MOVED, null, null, null);
+            this.nextTable = nextTable;
+        }
+    }
+
+    /**
+     * 切换到SipHash之后的数组  String键的hash由这个数组的密钥决定，扩容时密钥随数组一起传下去
+     */
+    static final class KeyedTable<K, V> extends AtomicReferenceArray<Node<K, V>> {
+        private static final long serialVersionUID = 1L;
+        final long seed0, seed1;
+
+        KeyedTable(int length, long seed0, long seed1) {
+            super(length);
+            this.seed0 = seed0;
+            this.seed1 = seed1;
+        }
+    }
+
+    /**
+     * 一次扩容的状态  所有参与迁移的线程共享
+     * rehash为true时是切换到SipHash的迁移：容量不变，每个节点按新的hash重新放置
+     */
+    static final class Transfer<K, V> {
+        final AtomicReferenceArray<Node<K, V>> oldTable;
+        final AtomicReferenceArray<Node<K, V>> newTable;
+        final boolean rehash;
+        final ForwardingNode<K, V> forwarding;
+        //还没被领取的桶是[0, transferIndex)  从高往低领取
+        final AtomicInteger transferIndex;
+        //已经迁移完的桶数  等于旧数组长度时扩容结束
+        final AtomicInteger transferred = new AtomicInteger();
+        final int stride;
+
+        Transfer(AtomicReferenceArray<Node<K, V>> oldTable, boolean rehash) {
+            int n = oldTable.length();
+            this.oldTable = oldTable;
+            this.rehash = rehash;
+            if (rehash) {
+                SecureRandom random = new SecureRandom();
+                this.newTable = new KeyedTable<>(n, random.nextLong(), random.nextLong());
+            } else if (oldTable instanceof KeyedTable) {
+                KeyedTable<K, V> keyed = (KeyedTable<K, V>) oldTable;
+                this.newTable = new KeyedTable<>(n << 1, keyed.seed0, keyed.seed1);
+            } else {
+                this.newTable = new AtomicReferenceArray<>(n << 1);
+            }
+            this.forwarding = new ForwardingNode<>(newTable);
+            this.transferIndex = new AtomicInteger(n);
+            this.stride = Math.max(NCPU > 1 ? (n >>> 3) / NCPU : n, MIN_TRANSFER_STRIDE);
+        }
+    }
+
+    private final AtomicReference<AtomicReferenceArray<Node<K, V>>> table;
+    //正在进行的扩容  没有时为null
+    private final AtomicReference<Transfer<K, V>> transfer = new AtomicReference<>();
+    //同jdk1.8 ConcurrentHashMap的sizeCtl  0表示空闲，-1表示有线程正在创建Transfer
+    //先CAS抢到它再分配新数组，同时触发扩容的线程里只有一个会分配
+    private final AtomicInteger sizeCtl = new AtomicInteger();
+    private final LongAdder count = new LongAdder();
+    //自上次扩容以来往长链表上插入String键的次数
+    private final AtomicInteger collisions = new AtomicInteger();
+
+    public ConcurrentHashmap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public ConcurrentHashmap(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        int cap = tableSizeFor((int) Math.min((long) (initialCapacity / LOAD_FACTOR) + 1, MAXIMUM_CAPACITY));
+        this.table = new AtomicReference<>(new AtomicReferenceArray<Node<K, V>>(cap));
+    }
+
+    //同Hashmap.hash  再去掉符号位，负数留给ForwardingNode
+    static int spread(int h) {
+        return (h ^ (h >>> 16)) & HASH_BITS;
+    }
+
+    //key在tab里的hash  KeyedTable里的String键用SipHash，其他情况同spread
+    static int hashOf(AtomicReferenceArray<?> tab, Object key) {
+        if (tab instanceof KeyedTable && key instanceof String) {
+            KeyedTable<?, ?> keyed = (KeyedTable<?, ?>) tab;
+            long h = SipHash.hash(keyed.seed0, keyed.seed1, (String) key);
+            return (int) (h ^ (h >>> 32)) & HASH_BITS;
+        }
+        return spread(key.hashCode());
+    }
+
+    static int tableSizeFor(int cap) {
+        int n = cap - 1;
+        n |= n >>> 1;
+        n |= n >>> 2;
+        n |= n >>> 4;
+        n |= n >>> 8;
+        n |= n >>> 16;
+        return (n < 0) ? 1 : (n >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY : n + 1;
+    }
+
+    public int size() {
+        long n = count.sum();
+        return n < 0 ? 0 : n > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) n;
+    }
+
+    public boolean isEmpty() {
+        return count.sum() <= 0;
+    }
+
+    public boolean isKeyedHashing() {
+        return table.get() instanceof KeyedTable;
+    }
+
+    /**
+     * 主动切换到SipHash  有别的扩容正在进行时先帮它迁完，再发起切换
+     */
+    public void useKeyedHashing() {
+        AtomicReferenceArray<Node<K, V>> tab;
+        while (!((tab = table.get()) instanceof KeyedTable)) {
+            tryResize(tab, true);
+            //没抢到sizeCtl  让出cpu等抢到的线程发布Transfer
+            Thread.yield();
+        }
+    }
+
+    /**
+     * 不加锁  遇到ForwardingNode就去新数组里找
+     */
+    public V get(Object key) {
+        AtomicReferenceArray<Node<K, V>> tab = table.get();
+        int h = hashOf(tab, key);
+        outer:
+        for (; ; ) {
+            Node<K, V> e = tab.get((tab.length() - 1) & h);
+            for (; e != null; e = e.next) {
+                if (e.hash == MOVED) {
+                    tab = ((ForwardingNode<K, V>) e).nextTable;
+                    h = hashOf(tab, key);
+                    continue outer;
+                }
+                K k;
+                if (e.hash == h && ((k = e.key) == key || key.equals(k)))
+                    return e.value;
+            }
+            return null;
+        }
+    }
+
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    public V put(K key, V value) {
+        return putVal(key, value, false);
+    }
+
+    public V putIfAbsent(K key, V value) {
+        return putVal(key, value, true);
+    }
+
+    final V putVal(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        int binCount;
+        AtomicReferenceArray<Node<K, V>> tab = table.get();
+        int hash = hashOf(tab, key);
+        for (; ; ) {
+            int n = tab.length();
+            int i = (n - 1) & hash;
+            Node<K, V> f = tab.get(i);
+            if (f == null) {
+                //空桶  CAS放入，失败说明被别的线程抢先了，重试
+                if (tab.compareAndSet(i, null, new Node<>(hash, key, value, null))) {
+                    binCount = 0;
+                    break;
+                }
+            } else if (f.hash == MOVED) {
+                //这个桶已经迁走了  帮忙扩容，然后到新数组里重试
+                tab = helpTransfer(tab, ((ForwardingNode<K, V>) f).nextTable);
+                hash = hashOf(tab, key);
+            } else {
+                V oldValue = null;
+                binCount = 0;
+                synchronized (f) {
+                    //加锁后确认头节点没有变（可能刚被迁移或删除）
+                    if (tab.get(i) == f) {
+                        binCount = 1;
+                        for (Node<K, V> e = f; ; ++binCount) {
+                            K k;
+                            if (e.hash == hash && ((k = e.key) == key || key.equals(k))) {
+                                oldValue = e.value;
+                                if (!onlyIfAbsent)
+                                    e.value = value;
+                                break;
+                            }
+                            Node<K, V> pred = e;
+                            if ((e = e.next) == null) {
+                                pred.next = new Node<>(hash, key, value, null);
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (binCount != 0) {
+                    if (binCount >= TREEIFY_THRESHOLD) {
+                        if (n < MIN_TREEIFY_CAPACITY)
+                            tryResize(tab, false);
+                        else if (key instanceof String && !(tab instanceof KeyedTable)
+                                && collisions.incrementAndGet() >= COLLISION_LIMIT)
+                            tryResize(tab, true);
+                    }
+                    if (oldValue != null)
+                        return oldValue;
+                    break;
+                }
+            }
+        }
+        addCount(tab);
+        return null;
+    }
+
+    public V remove(Object key) {
+        AtomicReferenceArray<Node<K, V>> tab = table.get();
+        int hash = hashOf(tab, key);
+        for (; ; ) {
+            int i = (tab.length() - 1) & hash;
+            Node<K, V> f = tab.get(i);
+            if (f == null)
+                return null;
+            if (f.hash == MOVED) {
+                tab = helpTransfer(tab, ((ForwardingNode<K, V>) f).nextTable);
+                hash = hashOf(tab, key);
+                continue;
+            }
+            boolean validated = false;
+            V oldValue = null;
+            synchronized (f) {
+                if (tab.get(i) == f) {
+                    validated = true;
+                    for (Node<K, V> e = f, pred = null; e != null; pred = e, e = e.next) {
+                        K k;
+                        if (e.hash == hash && ((k = e.key) == key || key.equals(k))) {
+                            oldValue = e.value;
+                            //正在遍历的读线程要么看到e，要么看到e.next，都是正确的
+                            if (pred == null)
+                                tab.set(i, e.next);
+                            else
+                                pred.next = e.next;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (validated) {
+                if (oldValue != null)
+                    count.decrement();
+                return oldValue;
+            }
+        }
+    }
+
+    public void clear() {
+        AtomicReferenceArray<Node<K, V>> tab = table.get();
+        for (int i = 0; i < tab.length(); ) {
+            Node<K, V> f = tab.get(i);
+            if (f == null) {
+                i++;
+            } else if (f.hash == MOVED) {
+                //迁移中  先帮忙迁完，再从新数组开头清
+                tab = helpTransfer(tab, ((ForwardingNode<K, V>) f).nextTable);
+                i = 0;
+            } else {
+                synchronized (f) {
+                    if (tab.get(i) == f) {
+                        long removed = 0;
+                        for (Node<K, V> e = f; e != null; e = e.next)
+                            removed++;
+                        tab.set(i++, null);
+                        count.add(-removed);
+                    }
+                }
+            }
+        }
+    }
+
+    //新增了一个节点  超过阈值时扩容
+    private void addCount(AtomicReferenceArray<Node<K, V>> tab) {
+        count.increment();
+        long s = count.sum();
+        int n = tab.length();
+        if (s >= (long) (n * LOAD_FACTOR) && n < MAXIMUM_CAPACITY)
+            tryResize(tab, false);
+    }
+
+    /**
+     * 发起扩容或加入正在进行的扩容
+     * rehash为true时发起的是切换到SipHash的迁移；已经有扩容在进行时只帮忙迁移，碰撞计数在扩容后重新开始
+     */
+    private void tryResize(AtomicReferenceArray<Node<K, V>> tab, boolean rehash) {
+        Transfer<K, V> t = transfer.get();
+        if (t == null) {
+            if (table.get() != tab || (rehash ? tab instanceof KeyedTable : tab.length() >= MAXIMUM_CAPACITY))
+                return;
+            //没抢到的线程不等待  抢到的线程马上会发布Transfer，之后put遇到ForwardingNode时再帮忙迁移
+            if (!sizeCtl.compareAndSet(0, -1))
+                return;
+            try {
+                //抢到之前别的线程可能已经发起甚至完成了这次扩容
+                if ((t = transfer.get()) == null) {
+                    if (table.get() != tab)
+                        return;
+                    t = new Transfer<>(tab, rehash);
+                    transfer.set(t);
+                }
+            } finally {
+                sizeCtl.set(0);
+            }
+        }
+        transfer(t);
+    }
+
+    private AtomicReferenceArray<Node<K, V>> helpTransfer(AtomicReferenceArray<Node<K, V>> tab,
+                                                          AtomicReferenceArray<Node<K, V>> nextTab) {
+        Transfer<K, V> t = transfer.get();
+        if (t != null && t.oldTable == tab)
+            transfer(t);
+        return nextTab;
+    }
+
+    /**
+     * 迁移  领取一段桶，迁完再领，直到没有可领的
+     * 最后一个迁完的线程把新数组设为table
+     */
+    private void transfer(Transfer<K, V> t) {
+        AtomicReferenceArray<Node<K, V>> oldTab = t.oldTable;
+        AtomicReferenceArray<Node<K, V>> newTab = t.newTable;
+        int n = oldTab.length();
+        for (; ; ) {
+            int hi = t.transferIndex.get();
+            if (hi <= 0)
+                return;
+            int lo = Math.max(hi - t.stride, 0);
+            if (!t.transferIndex.compareAndSet(hi, lo))
+                continue;
+            for (int i = hi - 1; i >= lo; ) {
+                Node<K, V> f = oldTab.get(i);
+                if (f == null) {
+                    //空桶直接放ForwardingNode  失败说明有线程刚放进了节点，重新处理这个桶
+                    if (oldTab.compareAndSet(i, null, t.forwarding))
+                        i--;
+                } else if (f.hash == MOVED) {
+                    //这个数组已经被别的扩容迁完了（过期的Transfer），什么也不用做
+                    i--;
+                } else {
+                    synchronized (f) {
+                        if (oldTab.get(i) == f && t.rehash) {
+                            //切换hash  节点按新的hash分散到新数组的任意桶里，和别的迁移线程、写线程用同样的方式放入
+                            for (Node<K, V> e = f; e != null; e = e.next)
+                                insert(newTab, hashOf(newTab, e.key), e.key, e.value);
+                            oldTab.set(i, t.forwarding);
+                            i--;
+                        } else if (oldTab.get(i) == f) {
+                            //和Hashmap.resize一样按hash & n拆成低位和高位两条链
+                            //这里复制节点而不是直接改next，正在旧链表上遍历的读线程不受影响
+                            Node<K, V> loHead = null, hiHead = null;
+                            for (Node<K, V> e = f; e != null; e = e.next) {
+                                if ((e.hash & n) == 0)
+                                    loHead = new Node<>(e.hash, e.key, e.value, loHead);
+                                else
+                                    hiHead = new Node<>(e.hash, e.key, e.value, hiHead);
+                            }
+                            newTab.set(i, loHead);
+                            newTab.set(i + n, hiHead);
+                            oldTab.set(i, t.forwarding);
+                            i--;
+                        }
+                    }
+                }
+            }
+            if (t.transferred.addAndGet(hi - lo) == n) {
+                //最后一段迁完  旧数组是当前table时才替换（过期的Transfer什么都不做）
+                if (table.compareAndSet(oldTab, newTab))
+                    collisions.set(0);
+                transfer.compareAndSet(t, null);
+                //迁移期间插入的元素可能已经让新数组也超过阈值
+                long s = count.sum();
+                if (s >= (long) (newTab.length() * LOAD_FACTOR) && newTab.length() < MAXIMUM_CAPACITY)
+                    tryResize(newTab, false);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 切换hash的迁移把节点放进新数组  新数组已经对读写线程可见，所以和putVal一样：空桶CAS，否则锁住头节点
+     * 键在旧数组里互不相同，放在链表头即可
+     */
+    private static <K, V> void insert(AtomicReferenceArray<Node<K, V>> tab, int hash, K key, V value) {
+        int i = (tab.length() - 1) & hash;
+        for (; ; ) {
+            Node<K, V> f = tab.get(i);
+            if (f == null) {
+                if (tab.compareAndSet(i, null, new Node<>(hash, key, value, null)))
+                    return;
+            } else {
+                synchronized (f) {
+                    if (tab.get(i) == f) {
+                        tab.set(i, new Node<>(hash, key, value, f));
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package SourceCode;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * 主动释放堆外内存
+ * DirectByteBuffer和MappedByteBuffer的内存要等到buffer对象被GC时才释放，jdk没有公开释放的方法，
+ * 这里通过反射调用cleaner：jdk9以上用Unsafe.invokeCleaner，jdk8用DirectBuffer.cleaner().clean()
+ * 释放后buffer不能再被访问，否则会读到非法内存导致jvm崩溃，调用方必须保证这一点
+ */
+final class DirectMemory {
+
+    private DirectMemory() {
+    }
+
+    static void free(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect())
+            return;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+        } catch (Exception ignored) {
+            //不是jdk9以上，继续尝试jdk8的方式
+        }
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null)
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+        } catch (Exception ignored) {
+            //交给GC
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package SourceCode;
+
+/**
+ * 估算键最近被访问的次数  W-TinyLFU用它决定新条目能不能挤掉老条目
+ * count-min sketch：每个long放16个4位计数器（最大15），每个键对应4个计数器，估计值取其中的最小值
+ * 增加的次数达到sampleSize后所有计数器减半，这样很久以前的热点会慢慢变冷
+ */
+final class FrequencySketch {
+
+    static final long RESET_MASK = 0x7777777777777777L;
+    static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    //最多1M个long  8M内存
+    static final int MAXIMUM_TABLE_SIZE = 1 << 20;
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    //expectedEntries是缓存预计能放下的条目数
+    FrequencySketch(long expectedEntries) {
+        int size = IntObjectMap.tableSizeFor((int) Math.max(16, Math.min(expectedEntries, MAXIMUM_TABLE_SIZE)));
+        table = new long[size];
+        mask = size - 1;
+        sampleSize = 10 * size;
+    }
+
+    int frequency(int hash) {
+        int h = spread(hash);
+        int frequency = 15;
+        for (int i = 0; i < 4; i++) {
+            int offset = ((h >>> (i << 3)) & 15) << 2;
+            frequency = Math.min(frequency, (int) ((table[indexOf(h, i)] >>> offset) & 15));
+        }
+        return frequency;
+    }
+
+    void increment(int hash) {
+        int h = spread(hash);
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(h, i);
+            int offset = ((h >>> (i << 3)) & 15) << 2;
+            long counterMask = 15L << offset;
+            if ((table[index] & counterMask) != counterMask) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize)
+            reset();
+    }
+
+    //所有计数器减半
+    private void reset() {
+        for (int i = 0; i < table.length; i++)
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        additions >>>= 1;
+    }
+
+    private int indexOf(int h, int i) {
+        long x = (h + SEEDS[i]) * SEEDS[i];
+        x += x >>> 32;
+        return (int) x & mask;
+    }
+
+    private static int spread(int h) {
+        h = ((h >>> 16) ^ h) * 0x45d9f3b;
+        h = ((h >>> 16) ^ h) * 0x45d9f3b;
+        return (h >>> 16) ^ h;
+    }
+}
@@ -0,0 +1,64 @@
+package SourceCode;
+
+/**
+ * ChainedHashmap打开统计后使用的计数器  关闭统计时ChainedHashmap.stats为null，热路径上只多一次判空
+ * 和ChainedHashmap一样不是线程安全的
+ */
+final class HashmapCounters {
+
+    //查找长度和链表长度直方图的格数  最后一格是大于等于它的所有长度
+    static final int HISTOGRAM_SIZE = 17;
+    //保留最近多少个负载采样
+    static final int LOAD_HISTORY_SIZE = 64;
+    //每多少次插入/删除采样一次负载
+    static final int LOAD_SAMPLE_INTERVAL = 1024;
+
+    final long startedAt = System.currentTimeMillis();
+    long gets;
+    long hits;
+    long probeTotal;
+    int maxProbe;
+    final long[] probeHistogram = new long[HISTOGRAM_SIZE];
+    long resizes;
+    long resizeNanos;
+    //环形缓冲：采样的时间、当时的条目数和容量
+    //每次扩容后采样一次，两次扩容之间每LOAD_SAMPLE_INTERVAL次插入/删除再采样一次；
+    //只在扩容前采样的话，负载按定义总是正好等于负载因子，看不出实际的变化
+    final long[] loadTimes = new long[LOAD_HISTORY_SIZE];
+    final int[] loadSizes = new int[LOAD_HISTORY_SIZE];
+    final int[] loadCapacities = new int[LOAD_HISTORY_SIZE];
+    long loadSamples;
+    int modificationsSinceSample;
+
+    //一次查找比较了probes个节点
+    void recordGet(int probes, boolean hit) {
+        gets++;
+        if (hit)
+            hits++;
+        probeTotal += probes;
+        if (probes > maxProbe)
+            maxProbe = probes;
+        probeHistogram[Math.min(probes, HISTOGRAM_SIZE - 1)]++;
+    }
+
+    //一次插入或删除之后  size是之后的条目数
+    void recordModification(int size, int capacity) {
+        if (++modificationsSinceSample >= LOAD_SAMPLE_INTERVAL)
+            recordLoad(size, capacity);
+    }
+
+    //newCapacity是扩容后的容量
+    void recordResize(long nanos, int size, int newCapacity) {
+        resizes++;
+        resizeNanos += nanos;
+        recordLoad(size, newCapacity);
+    }
+
+    private void recordLoad(int size, int capacity) {
+        modificationsSinceSample = 0;
+        int i = (int) (loadSamples++ % LOAD_HISTORY_SIZE);
+        loadTimes[i] = System.currentTimeMillis();
+        loadSizes[i] = size;
+        loadCapacities[i] = capacity;
+    }
+}
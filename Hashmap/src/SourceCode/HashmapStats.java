@@ -0,0 +1,157 @@
+package SourceCode;
+
+import java.util.Arrays;
+
+/**
+ * ChainedHashmap的统计快照  由ChainedHashmap.statsSnapshot()生成，之后不会再变
+ * 桶的占用情况（链表长度直方图等）每次都扫描整个table现算，不需要打开统计；
+ * 查找长度、扩容次数和耗时、负载历史只在enableStats之后才会记录
+ *
+ * 用来按实际负载调整初始容量和负载因子：
+ * 链表长度直方图集中在0和1、平均查找长度接近1，说明负载因子还可以调高省内存；
+ * 长链表的桶多说明hashCode分布差，参考Hashmap，达到TREEIFY_THRESHOLD(8)的桶在Hashmap里会变成红黑树；
+ * 扩容次数多、耗时长说明初始容量给小了，可以用ensureCapacity预分配
+ */
+public final class HashmapStats {
+
+    private final int size;
+    private final int capacity;
+    private final float configuredLoadFactor;
+    private final boolean keyedHashing;
+    private final long[] chainLengthHistogram;
+    private final int maxChainLength;
+    private final long longChainBins;
+    private final long gets;
+    private final long hits;
+    private final long probeTotal;
+    private final int maxProbeLength;
+    private final long[] probeLengthHistogram;
+    private final long resizeCount;
+    private final long resizeNanos;
+    private final long[] loadHistoryTimes;
+    private final double[] loadHistory;
+
+    HashmapStats(int size, int capacity, float configuredLoadFactor, boolean keyedHashing,
+                 long[] chainLengthHistogram, int maxChainLength, long longChainBins, HashmapCounters counters) {
+        this.size = size;
+        this.capacity = capacity;
+        this.configuredLoadFactor = configuredLoadFactor;
+        this.keyedHashing = keyedHashing;
+        this.chainLengthHistogram = chainLengthHistogram;
+        this.maxChainLength = maxChainLength;
+        this.longChainBins = longChainBins;
+        if (counters == null) {
+            gets = hits = probeTotal = resizeCount = resizeNanos = 0;
+            maxProbeLength = 0;
+            probeLengthHistogram = new long[0];
+            loadHistoryTimes = new long[0];
+            loadHistory = new double[0];
+            return;
+        }
+        gets = counters.gets;
+        hits = counters.hits;
+        probeTotal = counters.probeTotal;
+        maxProbeLength = counters.maxProbe;
+        probeLengthHistogram = counters.probeHistogram.clone();
+        resizeCount = counters.resizes;
+        resizeNanos = counters.resizeNanos;
+        //按时间顺序取出环形缓冲里的负载记录
+        int n = (int) Math.min(counters.loadSamples, HashmapCounters.LOAD_HISTORY_SIZE);
+        loadHistoryTimes = new long[n];
+        loadHistory = new double[n];
+        for (int j = 0; j < n; j++) {
+            int i = (int) ((counters.loadSamples - n + j) % HashmapCounters.LOAD_HISTORY_SIZE);
+            loadHistoryTimes[j] = counters.loadTimes[i];
+            loadHistory[j] = (double) counters.loadSizes[i] / counters.loadCapacities[i];
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    //table的长度  还没分配时为0
+    public int getCapacity() {
+        return capacity;
+    }
+
+    //当前的实际负载  size/capacity
+    public double getLoadFactor() {
+        return capacity == 0 ? 0 : (double) size / capacity;
+    }
+
+    public float getConfiguredLoadFactor() {
+        return configuredLoadFactor;
+    }
+
+    public boolean isKeyedHashing() {
+        return keyedHashing;
+    }
+
+    //下标i是长度为i的链表（桶）的个数  最后一格是大于等于它的所有长度
+    public long[] getChainLengthHistogram() {
+        return chainLengthHistogram.clone();
+    }
+
+    public long getEmptyBins() {
+        return chainLengthHistogram.length == 0 ? 0 : chainLengthHistogram[0];
+    }
+
+    public int getMaxChainLength() {
+        return maxChainLength;
+    }
+
+    //长度达到TREEIFY_THRESHOLD的桶  在Hashmap里会被treeifyBin转成红黑树
+    public long getLongChainBins() {
+        return longChainBins;
+    }
+
+    public long getGetCount() {
+        return gets;
+    }
+
+    public long getHitCount() {
+        return hits;
+    }
+
+    //每次查找平均比较的节点数
+    public double getAverageProbeLength() {
+        return gets == 0 ? 0 : (double) probeTotal / gets;
+    }
+
+    public int getMaxProbeLength() {
+        return maxProbeLength;
+    }
+
+    public long[] getProbeLengthHistogram() {
+        return probeLengthHistogram.clone();
+    }
+
+    public long getResizeCount() {
+        return resizeCount;
+    }
+
+    public long getResizeNanos() {
+        return resizeNanos;
+    }
+
+    //最近若干个负载采样的时间（毫秒时间戳）和当时的负载size/capacity
+    //每次扩容后采样一次，两次扩容之间每HashmapCounters.LOAD_SAMPLE_INTERVAL次插入/删除采样一次
+    public long[] getLoadHistoryTimes() {
+        return loadHistoryTimes.clone();
+    }
+
+    public double[] getLoadHistory() {
+        return loadHistory.clone();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size=%d capacity=%d load=%.3f/%.2f keyed=%b maxChain=%d longChainBins=%d chains=%s%n"
+                        + "gets=%d hits=%d avgProbe=%.3f maxProbe=%d probes=%s%n"
+                        + "resizes=%d resizeTime=%.3fms loadHistory=%s",
+                size, capacity, getLoadFactor(), configuredLoadFactor, keyedHashing, maxChainLength, longChainBins,
+                Arrays.toString(chainLengthHistogram), gets, hits, getAverageProbeLength(), maxProbeLength,
+                Arrays.toString(probeLengthHistogram), resizeCount, resizeNanos / 1e6, Arrays.toString(loadHistory));
+    }
+}
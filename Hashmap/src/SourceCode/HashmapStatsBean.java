@@ -0,0 +1,102 @@
+package SourceCode;
+
+/**
+ * HashmapStatsMXBean的实现
+ * JMX的线程和使用map的线程不是同一个，而ChainedHashmap不是线程安全的，所以读到的是近似值
+ */
+final class HashmapStatsBean implements HashmapStatsMXBean {
+
+    static final long CACHE_NANOS = 1_000_000_000L;
+
+    private final ChainedHashmap<?, ?> map;
+    private HashmapStats cached;
+    private long cachedAt;
+
+    HashmapStatsBean(ChainedHashmap<?, ?> map) {
+        this.map = map;
+    }
+
+    private synchronized HashmapStats snapshot() {
+        long now = System.nanoTime();
+        if (cached == null || now - cachedAt > CACHE_NANOS) {
+            cached = map.statsSnapshot();
+            cachedAt = now;
+        }
+        return cached;
+    }
+
+    public boolean isStatsEnabled() {
+        return map.isStatsEnabled();
+    }
+
+    public void setStatsEnabled(boolean enabled) {
+        if (enabled)
+            map.enableStats();
+        else
+            map.disableStats();
+    }
+
+    public int getSize() {
+        return snapshot().getSize();
+    }
+
+    public int getCapacity() {
+        return snapshot().getCapacity();
+    }
+
+    public double getLoadFactor() {
+        return snapshot().getLoadFactor();
+    }
+
+    public float getConfiguredLoadFactor() {
+        return snapshot().getConfiguredLoadFactor();
+    }
+
+    public boolean isKeyedHashing() {
+        return snapshot().isKeyedHashing();
+    }
+
+    public long[] getChainLengthHistogram() {
+        return snapshot().getChainLengthHistogram();
+    }
+
+    public long getEmptyBins() {
+        return snapshot().getEmptyBins();
+    }
+
+    public int getMaxChainLength() {
+        return snapshot().getMaxChainLength();
+    }
+
+    public long getLongChainBins() {
+        return snapshot().getLongChainBins();
+    }
+
+    public long getGetCount() {
+        return snapshot().getGetCount();
+    }
+
+    public double getAverageProbeLength() {
+        return snapshot().getAverageProbeLength();
+    }
+
+    public int getMaxProbeLength() {
+        return snapshot().getMaxProbeLength();
+    }
+
+    public long[] getProbeLengthHistogram() {
+        return snapshot().getProbeLengthHistogram();
+    }
+
+    public long getResizeCount() {
+        return snapshot().getResizeCount();
+    }
+
+    public double getResizeTimeMillis() {
+        return snapshot().getResizeNanos() / 1e6;
+    }
+
+    public double[] getLoadHistory() {
+        return snapshot().getLoadHistory();
+    }
+}
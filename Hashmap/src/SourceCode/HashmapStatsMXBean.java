@@ -0,0 +1,45 @@
+package SourceCode;
+
+/**
+ * ChainedHashmap的统计通过JMX暴露的属性  用ChainedHashmap.registerStatsMBean注册
+ * 每个属性都来自一次statsSnapshot()，快照会缓存一秒，避免jconsole一次读多个属性时反复扫描table
+ */
+public interface HashmapStatsMXBean {
+
+    boolean isStatsEnabled();
+
+    //打开或关闭查找长度、扩容的记录
+    void setStatsEnabled(boolean enabled);
+
+    int getSize();
+
+    int getCapacity();
+
+    double getLoadFactor();
+
+    float getConfiguredLoadFactor();
+
+    boolean isKeyedHashing();
+
+    long[] getChainLengthHistogram();
+
+    long getEmptyBins();
+
+    int getMaxChainLength();
+
+    long getLongChainBins();
+
+    long getGetCount();
+
+    double getAverageProbeLength();
+
+    int getMaxProbeLength();
+
+    long[] getProbeLengthHistogram();
+
+    long getResizeCount();
+
+    double getResizeTimeMillis();
+
+    double[] getLoadHistory();
+}
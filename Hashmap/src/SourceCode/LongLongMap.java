@@ -0,0 +1,211 @@
+package SourceCode;
+
+import java.util.Arrays;
+
+/**
+ * long为键、long为值的开放寻址哈希表  实现同IntObjectMap，键和值都是基本类型
+ * Hashmap里每个键值对都是一个Node对象（hash、key、value、next四个字段，再加上Long键和值的装箱），一个条目大约48字节
+ * 这里键和值分别放在两个long[]平行数组里，没有任何条目对象，get和put都不分配内存
+ *
+ * 冲突用线性探测解决：槽位被占就看下一个，直到找到键或者空槽
+ * 删除时不留墓碑，而是把后面同一探测链上的元素往前挪（backward shift），保证查找遇到空槽就可以停
+ * 键0用来表示空槽，所以键为0的条目单独存放
+ * 值是基本类型没有null，查不到时返回构造时指定的noEntryValue（默认0），需要区分时用containsKey
+ */
+public class LongLongMap {
+
+    //默认容量和负载因子同Hashmap
+    static final int DEFAULT_INITIAL_CAPACITY = 1 << 4;
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+    static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    private long[] keys;
+    private long[] values;
+    //键为0的条目
+    private boolean hasZeroKey;
+    private long zeroValue;
+    //查不到时返回的值
+    private final long noEntryValue;
+    private int size;
+    //超过这个数就扩容
+    private int threshold;
+    private final float loadFactor;
+
+    public LongLongMap() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR, 0);
+    }
+
+    public LongLongMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR, 0);
+    }
+
+    //initialCapacity是预计的条目数，不是数组长度
+    public LongLongMap(int initialCapacity, float loadFactor, long noEntryValue) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        //开放寻址表太满时探测链会变得很长，负载因子不能接近1
+        if (!(loadFactor > 0 && loadFactor < 1))
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        this.loadFactor = loadFactor;
+        this.noEntryValue = noEntryValue;
+        int capacity = IntObjectMap.tableSizeFor((int) Math.min(Math.ceil(initialCapacity / loadFactor), MAXIMUM_CAPACITY));
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long get(long key) {
+        return getOrDefault(key, noEntryValue);
+    }
+
+    public long getOrDefault(long key, long defaultValue) {
+        if (key == 0)
+            return hasZeroKey ? zeroValue : defaultValue;
+        long[] keys = this.keys;
+        int mask = keys.length - 1;
+        for (int i = LongObjectMap.mix(key) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key)
+                return values[i];
+            if (k == 0)
+                return defaultValue;
+        }
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0)
+            return hasZeroKey;
+        long[] keys = this.keys;
+        int mask = keys.length - 1;
+        for (int i = LongObjectMap.mix(key) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key)
+                return true;
+            if (k == 0)
+                return false;
+        }
+    }
+
+    //返回旧值  没有旧值时返回noEntryValue
+    public long put(long key, long value) {
+        if (key == 0) {
+            long old = hasZeroKey ? zeroValue : noEntryValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return old;
+        }
+        long[] keys = this.keys;
+        int mask = keys.length - 1;
+        int i = LongObjectMap.mix(key) & mask;
+        for (long k; (k = keys[i]) != 0; i = (i + 1) & mask) {
+            if (k == key) {
+                long old = values[i];
+                values[i] = value;
+                return old;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > threshold)
+            resize(keys.length << 1);
+        return noEntryValue;
+    }
+
+    public long remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey)
+                return noEntryValue;
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+        long[] keys = this.keys;
+        int mask = keys.length - 1;
+        for (int i = LongObjectMap.mix(key) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == 0)
+                return noEntryValue;
+            if (k == key) {
+                long old = values[i];
+                shiftKeys(i);
+                size--;
+                return old;
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    /**
+     * 删除slot上的元素后，把后面探测链上的元素往前挪
+     * 一个元素可以挪到slot的条件是：slot在它的理想位置和它当前位置之间（按环形计算）
+     */
+    private void shiftKeys(int slot) {
+        long[] keys = this.keys;
+        long[] values = this.values;
+        int mask = keys.length - 1;
+        int last = slot;
+        for (int i = (slot + 1) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == 0)
+                break;
+            int ideal = LongObjectMap.mix(k) & mask;
+            //ideal不在(last, i]之间时，说明这个元素可以挪到last
+            if (last <= i ? (ideal <= last || ideal > i) : (ideal <= last && ideal > i)) {
+                keys[last] = k;
+                values[last] = values[i];
+                last = i;
+            }
+        }
+        keys[last] = 0;
+    }
+
+    private void resize(int newCapacity) {
+        if (newCapacity > MAXIMUM_CAPACITY || newCapacity < 0) {
+            //已经到最大容量  再放下去探测链会越来越长
+            if (size >= MAXIMUM_CAPACITY - 1)
+                throw new IllegalStateException("LongLongMap is full");
+            threshold = MAXIMUM_CAPACITY - 1;
+            return;
+        }
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(newCapacity);
+        long[] keys = this.keys;
+        long[] values = this.values;
+        int mask = newCapacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long k = oldKeys[j];
+            if (k != 0) {
+                int i = LongObjectMap.mix(k) & mask;
+                while (keys[i] != 0)
+                    i = (i + 1) & mask;
+                keys[i] = k;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+    }
+
+    public long getNoEntryValue() {
+        return noEntryValue;
+    }
+}
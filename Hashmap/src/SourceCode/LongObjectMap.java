@@ -0,0 +1,214 @@
+package SourceCode;
+
+import java.util.Arrays;
+
+/**
+ * long为键的开放寻址哈希表  实现同IntObjectMap，只是键换成了long
+ * Hashmap里每个键值对都是一个Node对象（hash、key、value、next四个字段，再加上Long键的装箱），一个条目大约48字节
+ * 这里键和值分别放在long[]和Object[]两个平行数组里，没有任何条目对象，get和put都不分配内存
+ *
+ * 冲突用线性探测解决：槽位被占就看下一个，直到找到键或者空槽
+ * 删除时不留墓碑，而是把后面同一探测链上的元素往前挪（backward shift），保证查找遇到空槽就可以停
+ * 键0用来表示空槽，所以键为0的条目单独存放
+ */
+public class LongObjectMap<V> {
+
+    //默认容量和负载因子同Hashmap
+    static final int DEFAULT_INITIAL_CAPACITY = 1 << 4;
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+    static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    private long[] keys;
+    private Object[] values;
+    //键为0的条目
+    private boolean hasZeroKey;
+    private V zeroValue;
+    private int size;
+    //超过这个数就扩容
+    private int threshold;
+    private final float loadFactor;
+
+    public LongObjectMap() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongObjectMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    //initialCapacity是预计的条目数，不是数组长度
+    public LongObjectMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        //开放寻址表太满时探测链会变得很长，负载因子不能接近1
+        if (!(loadFactor > 0 && loadFactor < 1))
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        this.loadFactor = loadFactor;
+        int capacity = IntObjectMap.tableSizeFor((int) Math.min(Math.ceil(initialCapacity / loadFactor), MAXIMUM_CAPACITY));
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (key == 0)
+            return zeroValue;
+        long[] keys = this.keys;
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key)
+                return (V) values[i];
+            if (k == 0)
+                return null;
+        }
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0)
+            return hasZeroKey;
+        long[] keys = this.keys;
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key)
+                return true;
+            if (k == 0)
+                return false;
+        }
+    }
+
+    //返回旧值  没有旧值时返回null
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (key == 0) {
+            V old = zeroValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return old;
+        }
+        long[] keys = this.keys;
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        for (long k; (k = keys[i]) != 0; i = (i + 1) & mask) {
+            if (k == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > threshold)
+            resize(keys.length << 1);
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        if (key == 0) {
+            V old = zeroValue;
+            if (hasZeroKey) {
+                hasZeroKey = false;
+                zeroValue = null;
+                size--;
+            }
+            return old;
+        }
+        long[] keys = this.keys;
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == 0)
+                return null;
+            if (k == key) {
+                V old = (V) values[i];
+                shiftKeys(i);
+                size--;
+                return old;
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        hasZeroKey = false;
+        zeroValue = null;
+        size = 0;
+    }
+
+    /**
+     * 删除slot上的元素后，把后面探测链上的元素往前挪
+     * 一个元素可以挪到slot的条件是：slot在它的理想位置和它当前位置之间（按环形计算）
+     */
+    private void shiftKeys(int slot) {
+        long[] keys = this.keys;
+        Object[] values = this.values;
+        int mask = keys.length - 1;
+        int last = slot;
+        for (int i = (slot + 1) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == 0)
+                break;
+            int ideal = mix(k) & mask;
+            //ideal不在(last, i]之间时，说明这个元素可以挪到last
+            if (last <= i ? (ideal <= last || ideal > i) : (ideal <= last && ideal > i)) {
+                keys[last] = k;
+                values[last] = values[i];
+                last = i;
+            }
+        }
+        keys[last] = 0;
+        values[last] = null;
+    }
+
+    private void resize(int newCapacity) {
+        if (newCapacity > MAXIMUM_CAPACITY || newCapacity < 0) {
+            //已经到最大容量  再放下去探测链会越来越长
+            if (size >= MAXIMUM_CAPACITY - 1)
+                throw new IllegalStateException("LongObjectMap is full");
+            threshold = MAXIMUM_CAPACITY - 1;
+            return;
+        }
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(newCapacity);
+        long[] keys = this.keys;
+        Object[] values = this.values;
+        int mask = newCapacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long k = oldKeys[j];
+            if (k != 0) {
+                int i = mix(k) & mask;
+                while (keys[i] != 0)
+                    i = (i + 1) & mask;
+                keys[i] = k;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+    }
+
+    //把64位的键混合成32位的哈希  高32位也参与运算，见IntObjectMap.mix
+    static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) (h ^ (h >>> 16));
+    }
+}
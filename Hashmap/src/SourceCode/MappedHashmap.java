@@ -0,0 +1,377 @@
+package SourceCode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ConcurrentModificationException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * 快照和热启动
+ * 服务重启时靠一次次put重建几G的表要好几分钟，这里把ChainedHashmap的table原样写到文件里，
+ * 启动时只需要把文件mmap进来，读操作直接在映射的内存上按桶和链表查找，不需要反序列化全部条目，也不需要重新计算hash
+ *
+ * 文件格式（大端）：
+ * 头部48字节：magic(long) 版本(int) table长度(int) 条目数(int) 标志(int) 文件长度(long) SipHash密钥(2个long)
+ *          标志的最低位表示原表已经切换到SipHash模式（见ChainedHashmap.useKeyedHashing），这时用同样的密钥计算String键的hash
+ * 桶数组：table长度个long，每个是该桶第一条记录在文件中的位置，0表示空桶
+ * 记录：下一条记录的位置(long，0表示链表结束) hash(int) 键长度(int) 值长度(int) 键 值
+ *      长度为-1表示null键或null值，键值通过Serializer转成字节
+ *
+ * 存的hash就是原表节点里的hash，所以键的hashCode必须在不同进程间保持一致（String、Integer、Long等），
+ * 不能用没有重写hashCode的对象或枚举做键
+ *
+ * 修改时才把条目提升到堆上：put/remove写到一个ChainedHashmap里（remove放一个TOMBSTONE），
+ * 读的时候先查这张表，没有再查快照，快照文件本身始终是只读的
+ * 用完调用close解除映射
+ */
+public class MappedHashmap<K, V> implements AutoCloseable {
+
+    static final long MAGIC = 0x484D534E41505631L;//HMSNAPV1
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 48;
+    static final int FLAG_KEYED_HASHING = 1;
+    static final int RECORD_HEADER = 20;
+    //每个映射窗口1G  单个MappedByteBuffer最多只能映射2G
+    static final int WINDOW_SHIFT = 30;
+    static final int WINDOW_MASK = (1 << WINDOW_SHIFT) - 1;
+    static final int BUFFER_SIZE = 1 << 20;
+    //堆上的表里表示“已删除”的值
+    private static final Object TOMBSTONE = new Object();
+
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private MappedByteBuffer[] windows;
+    private final int tableLength;
+    private final boolean keyedHashing;
+    private final long hashSeed0, hashSeed1;
+    //被修改过的条目
+    private final ChainedHashmap<K, Object> promoted = new ChainedHashmap<>();
+    private int size;
+    private boolean closed;
+
+    private MappedHashmap(Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                          MappedByteBuffer[] windows, ByteBuffer header) {
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.windows = windows;
+        this.tableLength = header.getInt(12);
+        this.size = header.getInt(16);
+        this.keyedHashing = (header.getInt(20) & FLAG_KEYED_HASHING) != 0;
+        this.hashSeed0 = header.getLong(32);
+        this.hashSeed1 = header.getLong(40);
+    }
+
+    /**
+     * 把map的table写成快照文件  先写到临时文件，写完force后再原子地重命名，所以中途失败不会留下半个快照
+     * 写的过程中map不能被修改
+     */
+    public static <K, V> void writeSnapshot(ChainedHashmap<K, V> map, Path file,
+                                            Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+        map.completeRehash();
+        ChainedHashmap.Node<K, V>[] tab = map.table;
+        int n = tab == null ? 0 : tab.length;
+        int mc = map.modCount;
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Output buckets = new Output(channel, HEADER_SIZE);
+            Output records = new Output(channel, HEADER_SIZE + (long) n * 8);
+            for (int i = 0; i < n; i++) {
+                ChainedHashmap.Node<K, V> e = tab[i];
+                buckets.putLong(e == null ? 0 : records.position());
+                for (; e != null; e = e.next) {
+                    byte[] k = e.key == null ? null : keySerializer.serialize(e.key);
+                    byte[] v = e.value == null ? null : valueSerializer.serialize(e.value);
+                    long length = RECORD_HEADER + lengthOf(k) + lengthOf(v);
+                    records.putLong(e.next == null ? 0 : records.position() + length);
+                    records.putInt(e.hash);
+                    records.putInt(k == null ? -1 : k.length);
+                    records.putInt(v == null ? -1 : v.length);
+                    records.put(k);
+                    records.put(v);
+                }
+            }
+            if (map.modCount != mc)
+                throw new ConcurrentModificationException();
+            buckets.flush();
+            records.flush();
+            Output header = new Output(channel, 0);
+            header.putLong(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(n);
+            header.putInt(map.size);
+            header.putInt(map.keyedHashing ? FLAG_KEYED_HASHING : 0);
+            header.putLong(records.position());
+            header.putLong(map.hashSeed0);
+            header.putLong(map.hashSeed1);
+            header.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    //把快照文件映射进来  只读头部，不读任何条目
+    public static <K, V> MappedHashmap<K, V> open(Path file, Serializer<K> keySerializer,
+                                                  Serializer<V> valueSerializer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE)
+                throw new IOException("Not a snapshot file: " + file);
+            int count = (int) ((fileSize + WINDOW_MASK) >>> WINDOW_SHIFT);
+            MappedByteBuffer[] windows = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long position = (long) i << WINDOW_SHIFT;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(1L << WINDOW_SHIFT, fileSize - position));
+            }
+            ByteBuffer header = windows[0];
+            if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION || header.getLong(24) != fileSize) {
+                for (MappedByteBuffer window : windows)
+                    DirectMemory.free(window);
+                throw new IOException("Not a snapshot file or truncated: " + file);
+            }
+            return new MappedHashmap<>(keySerializer, valueSerializer, windows, header);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    //提升到堆上的条目数（包括删除标记）
+    public int promotedCount() {
+        return promoted.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        checkOpen();
+        if (promoted.containsKey(key)) {
+            Object value = promoted.get(key);
+            return value == TOMBSTONE ? null : (V) value;
+        }
+        long record = findRecord(hashOf(key), key);
+        return record == 0 ? null : readValue(record);
+    }
+
+    public boolean containsKey(Object key) {
+        checkOpen();
+        if (promoted.containsKey(key))
+            return promoted.get(key) != TOMBSTONE;
+        return findRecord(hashOf(key), key) != 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        checkOpen();
+        if (promoted.containsKey(key)) {
+            Object old = promoted.put(key, value);
+            if (old == TOMBSTONE) {
+                size++;
+                return null;
+            }
+            return (V) old;
+        }
+        long record = findRecord(hashOf(key), key);
+        promoted.put(key, value);
+        if (record == 0) {
+            size++;
+            return null;
+        }
+        return readValue(record);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        checkOpen();
+        long record = findRecord(hashOf(key), key);
+        if (promoted.containsKey(key)) {
+            Object old = promoted.get(key);
+            if (old == TOMBSTONE)
+                return null;
+            //快照里也有这个键时要留下删除标记
+            if (record != 0)
+                promoted.put((K) key, TOMBSTONE);
+            else
+                promoted.remove(key);
+            size--;
+            return (V) old;
+        }
+        if (record == 0)
+            return null;
+        promoted.put((K) key, TOMBSTONE);
+        size--;
+        return readValue(record);
+    }
+
+    //遍历所有键值对  先遍历修改过的条目，再遍历快照里没被覆盖的条目
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        checkOpen();
+        promoted.forEach((k, v) -> {
+            if (v != TOMBSTONE)
+                action.accept(k, (V) v);
+        });
+        for (int i = 0; i < tableLength; i++) {
+            for (long record = getLong(HEADER_SIZE + (long) i * 8); record != 0; record = getLong(record)) {
+                K key = readKey(record);
+                if (!promoted.containsKey(key))
+                    action.accept(key, readValue(record));
+            }
+        }
+    }
+
+    //把所有条目读到一个ChainedHashmap里  可以再用writeSnapshot写成新的快照
+    public ChainedHashmap<K, V> materialize() {
+        ChainedHashmap<K, V> map = new ChainedHashmap<>((int) Math.min((long) (size / ChainedHashmap.DEFAULT_LOAD_FACTOR) + 1,
+                ChainedHashmap.MAXIMUM_CAPACITY));
+        forEach(map::put);
+        return map;
+    }
+
+    //解除映射  之后不能再使用
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        for (MappedByteBuffer window : windows)
+            DirectMemory.free(window);
+        windows = null;
+        promoted.clear();
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("MappedHashmap is closed");
+    }
+
+    private int hashOf(Object key) {
+        return keyedHashing ? ChainedHashmap.keyedHash(key, hashSeed0, hashSeed1) : ChainedHashmap.hash(key);
+    }
+
+    //在快照里找key对应的记录  同ChainedHashmap.getNode，先比hash再反序列化键比较equals
+    private long findRecord(int hash, Object key) {
+        if (tableLength == 0)
+            return 0;
+        long record = getLong(HEADER_SIZE + (long) ((tableLength - 1) & hash) * 8);
+        for (; record != 0; record = getLong(record)) {
+            if (getInt(record + 8) == hash && Objects.equals(readKey(record), key))
+                return record;
+        }
+        return 0;
+    }
+
+    private K readKey(long record) {
+        int keyLength = getInt(record + 12);
+        return keyLength < 0 ? null : keySerializer.deserialize(getBytes(record + RECORD_HEADER, keyLength));
+    }
+
+    private V readValue(long record) {
+        int keyLength = Math.max(getInt(record + 12), 0);
+        int valueLength = getInt(record + 16);
+        return valueLength < 0 ? null : valueSerializer.deserialize(getBytes(record + RECORD_HEADER + keyLength, valueLength));
+    }
+
+    //跨窗口边界的读取逐字节拼起来
+    private long getLong(long position) {
+        ByteBuffer window = windows[(int) (position >>> WINDOW_SHIFT)];
+        int offset = (int) (position & WINDOW_MASK);
+        if (offset + 8 <= window.limit())
+            return window.getLong(offset);
+        return ((long) getInt(position) << 32) | (getInt(position + 4) & 0xFFFFFFFFL);
+    }
+
+    private int getInt(long position) {
+        ByteBuffer window = windows[(int) (position >>> WINDOW_SHIFT)];
+        int offset = (int) (position & WINDOW_MASK);
+        if (offset + 4 <= window.limit())
+            return window.getInt(offset);
+        int v = 0;
+        for (int i = 0; i < 4; i++)
+            v = (v << 8) | (getByte(position + i) & 0xFF);
+        return v;
+    }
+
+    private byte getByte(long position) {
+        return windows[(int) (position >>> WINDOW_SHIFT)].get((int) (position & WINDOW_MASK));
+    }
+
+    private byte[] getBytes(long position, int length) {
+        byte[] bytes = new byte[length];
+        int done = 0;
+        while (done < length) {
+            long p = position + done;
+            ByteBuffer window = windows[(int) (p >>> WINDOW_SHIFT)].duplicate();
+            window.position((int) (p & WINDOW_MASK));
+            int n = Math.min(window.remaining(), length - done);
+            window.get(bytes, done, n);
+            done += n;
+        }
+        return bytes;
+    }
+
+    private static int lengthOf(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    //带缓冲的定位写  缓冲满了就写到文件的对应位置
+    private static final class Output {
+        final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        //缓冲区开头对应的文件位置
+        long flushed;
+
+        Output(FileChannel channel, long position) {
+            this.channel = channel;
+            this.flushed = position;
+        }
+
+        long position() {
+            return flushed + buffer.position();
+        }
+
+        void putLong(long v) throws IOException {
+            ensure(8);
+            buffer.putLong(v);
+        }
+
+        void putInt(int v) throws IOException {
+            ensure(4);
+            buffer.putInt(v);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            if (bytes == null)
+                return;
+            for (int done = 0; done < bytes.length; ) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), bytes.length - done);
+                buffer.put(bytes, done, n);
+                done += n;
+            }
+        }
+
+        private void ensure(int n) throws IOException {
+            if (buffer.remaining() < n)
+                flush();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                flushed += channel.write(buffer, flushed);
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package SourceCode;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 堆外哈希表
+ * 几亿个小条目放在Hashmap里时，Node<K,V>[] table和每个Node对象都在堆上，G1的压力很大，GC停顿也会变长
+ * 这里把键值序列化后全部放在堆外（DirectByteBuffer），堆上只剩几个固定大小的对象，堆的占用和条目数无关
+ *
+ * 由两部分组成：
+ * ①.索引：开放寻址（线性探测）的槽位数组，每个槽16字节：hash(int) 填充(int) 记录的位置(long，0表示空槽)
+ *   槽数超过一个buffer能放下的数量时分成多个段
+ * ②.数据区：按块（默认64M）分配的堆外内存，条目按 键长度(int) 值长度(int) 键 值 的格式依次追加
+ *   记录的位置 = (块号+1) << 32 | 块内偏移
+ *
+ * put已有的键时，新值和旧值一样长就原地覆盖，否则追加一条新记录，旧记录变成垃圾；remove也会产生垃圾
+ * 垃圾超过数据区的一半时自动整理（把存活的记录复制到新的块里），也可以手动调用compact
+ * 键按序列化后的字节比较，put/get/remove的语义同Hashmap.putVal（返回旧值，不存在时返回null），键和值都不能为null
+ * 用完必须调用close释放堆外内存
+ */
+public class OffHeapHashmap<K, V> implements AutoCloseable {
+
+    static final int SLOT_SIZE = 16;
+    //每个索引段最多2^26个槽，也就是1G
+    static final int SEGMENT_SHIFT = 26;
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+    static final float LOAD_FACTOR = 0.75f;
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+    //记录头：键长度和值长度
+    static final int RECORD_HEADER = 8;
+
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final int chunkSize;
+
+    private ByteBuffer[] index;
+    private int capacity;
+    private int size;
+    private int threshold;
+
+    private List<ByteBuffer> chunks = new ArrayList<>();
+    //数据区已用字节和其中的垃圾字节
+    private long usedBytes;
+    private long garbageBytes;
+    private boolean closed;
+
+    public OffHeapHashmap(Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(keySerializer, valueSerializer, 16, DEFAULT_CHUNK_SIZE);
+    }
+
+    //initialCapacity是预计的条目数
+    public OffHeapHashmap(Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                          int initialCapacity, int chunkSize) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        if (chunkSize < RECORD_HEADER)
+            throw new IllegalArgumentException("Illegal chunk size: " + chunkSize);
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.chunkSize = chunkSize;
+        int cap = IntObjectMap.tableSizeFor((int) Math.min(Math.ceil(initialCapacity / LOAD_FACTOR), MAXIMUM_CAPACITY));
+        allocateIndex(cap);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    //堆外内存的总占用（索引+数据区）
+    public long offHeapBytes() {
+        long bytes = (long) capacity * SLOT_SIZE;
+        for (ByteBuffer chunk : chunks)
+            bytes += chunk.capacity();
+        return bytes;
+    }
+
+    public V get(K key) {
+        checkOpen();
+        byte[] k = keySerializer.serialize(key);
+        int slot = findSlot(hash(k), k);
+        if (slot < 0)
+            return null;
+        return valueSerializer.deserialize(readValue(slotRef(slot)));
+    }
+
+    public boolean containsKey(K key) {
+        checkOpen();
+        byte[] k = keySerializer.serialize(key);
+        return findSlot(hash(k), k) >= 0;
+    }
+
+    public V put(K key, V value) {
+        checkOpen();
+        byte[] k = keySerializer.serialize(key);
+        byte[] v = valueSerializer.serialize(value);
+        int h = hash(k);
+        int mask = capacity - 1;
+        int slot = mix(h) & mask;
+        for (long ref; (ref = slotRef(slot)) != 0; slot = (slot + 1) & mask) {
+            if (slotHash(slot) == h && keyEquals(ref, k)) {
+                byte[] old = readValue(ref);
+                ByteBuffer chunk = chunkOf(ref);
+                int offset = offsetOf(ref);
+                if (old.length == v.length) {
+                    //一样长  原地覆盖
+                    for (int i = 0; i < v.length; i++)
+                        chunk.put(offset + RECORD_HEADER + k.length + i, v[i]);
+                } else {
+                    garbageBytes += RECORD_HEADER + k.length + old.length;
+                    setSlot(slot, h, append(k, v));
+                    compactIfNeeded();
+                }
+                return valueSerializer.deserialize(old);
+            }
+        }
+        setSlot(slot, h, append(k, v));
+        if (++size > threshold)
+            resize();
+        return null;
+    }
+
+    public V remove(K key) {
+        checkOpen();
+        byte[] k = keySerializer.serialize(key);
+        int slot = findSlot(hash(k), k);
+        if (slot < 0)
+            return null;
+        long ref = slotRef(slot);
+        byte[] old = readValue(ref);
+        garbageBytes += RECORD_HEADER + k.length + old.length;
+        shiftSlots(slot);
+        size--;
+        compactIfNeeded();
+        return valueSerializer.deserialize(old);
+    }
+
+    /**
+     * 整理数据区：把存活的记录按槽的顺序复制到新的块里，释放旧的块
+     */
+    public void compact() {
+        checkOpen();
+        List<ByteBuffer> oldChunks = chunks;
+        chunks = new ArrayList<>();
+        usedBytes = 0;
+        garbageBytes = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            long ref = slotRef(slot);
+            if (ref == 0)
+                continue;
+            ByteBuffer chunk = oldChunks.get((int) (ref >>> 32) - 1);
+            int offset = offsetOf(ref);
+            int length = RECORD_HEADER + chunk.getInt(offset) + chunk.getInt(offset + 4);
+            long newRef = reserve(length);
+            ByteBuffer target = chunkOf(newRef);
+            int targetOffset = offsetOf(newRef);
+            for (int i = 0; i < length; i++)
+                target.put(targetOffset + i, chunk.get(offset + i));
+            setSlot(slot, slotHash(slot), newRef);
+        }
+        for (ByteBuffer chunk : oldChunks)
+            DirectMemory.free(chunk);
+    }
+
+    //释放所有堆外内存  之后不能再使用
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        for (ByteBuffer segment : index)
+            DirectMemory.free(segment);
+        for (ByteBuffer chunk : chunks)
+            DirectMemory.free(chunk);
+        index = null;
+        chunks = null;
+        size = 0;
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("OffHeapHashmap is closed");
+    }
+
+    private void compactIfNeeded() {
+        if (garbageBytes >= chunkSize && garbageBytes * 2 > usedBytes)
+            compact();
+    }
+
+    //返回键所在的槽  不存在时返回-1
+    private int findSlot(int h, byte[] k) {
+        int mask = capacity - 1;
+        for (int slot = mix(h) & mask; ; slot = (slot + 1) & mask) {
+            long ref = slotRef(slot);
+            if (ref == 0)
+                return -1;
+            if (slotHash(slot) == h && keyEquals(ref, k))
+                return slot;
+        }
+    }
+
+    //删除槽后把探测链上后面的槽往前挪  同IntObjectMap.shiftKeys
+    private void shiftSlots(int slot) {
+        int mask = capacity - 1;
+        int last = slot;
+        for (int i = (slot + 1) & mask; ; i = (i + 1) & mask) {
+            long ref = slotRef(i);
+            if (ref == 0)
+                break;
+            int h = slotHash(i);
+            int ideal = mix(h) & mask;
+            if (last <= i ? (ideal <= last || ideal > i) : (ideal <= last && ideal > i)) {
+                setSlot(last, h, ref);
+                last = i;
+            }
+        }
+        setSlot(last, 0, 0);
+    }
+
+    //扩容只需要按槽里存的hash重新放置，不用读键
+    private void resize() {
+        if (capacity >= MAXIMUM_CAPACITY) {
+            if (size >= MAXIMUM_CAPACITY - 1)
+                throw new IllegalStateException("OffHeapHashmap is full");
+            threshold = MAXIMUM_CAPACITY - 1;
+            return;
+        }
+        ByteBuffer[] oldIndex = index;
+        int oldCapacity = capacity;
+        allocateIndex(oldCapacity << 1);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldCapacity; j++) {
+            ByteBuffer segment = oldIndex[j >>> SEGMENT_SHIFT];
+            int offset = (j & ((1 << SEGMENT_SHIFT) - 1)) * SLOT_SIZE;
+            long ref = segment.getLong(offset + 8);
+            if (ref == 0)
+                continue;
+            int h = segment.getInt(offset);
+            int slot = mix(h) & mask;
+            while (slotRef(slot) != 0)
+                slot = (slot + 1) & mask;
+            setSlot(slot, h, ref);
+        }
+        for (ByteBuffer segment : oldIndex)
+            DirectMemory.free(segment);
+    }
+
+    private void allocateIndex(int cap) {
+        capacity = Math.max(cap, 2);
+        int segmentSlots = 1 << SEGMENT_SHIFT;
+        int segments = (capacity + segmentSlots - 1) / segmentSlots;
+        index = new ByteBuffer[segments];
+        for (int i = 0; i < segments; i++)
+            index[i] = ByteBuffer.allocateDirect(Math.min(capacity, segmentSlots) * SLOT_SIZE);
+        threshold = Math.min((int) (capacity * LOAD_FACTOR), capacity - 1);
+    }
+
+    private int slotHash(int slot) {
+        return index[slot >>> SEGMENT_SHIFT].getInt((slot & ((1 << SEGMENT_SHIFT) - 1)) * SLOT_SIZE);
+    }
+
+    private long slotRef(int slot) {
+        return index[slot >>> SEGMENT_SHIFT].getLong((slot & ((1 << SEGMENT_SHIFT) - 1)) * SLOT_SIZE + 8);
+    }
+
+    private void setSlot(int slot, int h, long ref) {
+        ByteBuffer segment = index[slot >>> SEGMENT_SHIFT];
+        int offset = (slot & ((1 << SEGMENT_SHIFT) - 1)) * SLOT_SIZE;
+        segment.putInt(offset, h);
+        segment.putLong(offset + 8, ref);
+    }
+
+    //追加一条记录  返回它的位置
+    private long append(byte[] k, byte[] v) {
+        long ref = reserve(RECORD_HEADER + k.length + v.length);
+        ByteBuffer chunk = chunkOf(ref);
+        int offset = offsetOf(ref);
+        chunk.putInt(offset, k.length);
+        chunk.putInt(offset + 4, v.length);
+        for (int i = 0; i < k.length; i++)
+            chunk.put(offset + RECORD_HEADER + i, k[i]);
+        for (int i = 0; i < v.length; i++)
+            chunk.put(offset + RECORD_HEADER + k.length + i, v[i]);
+        return ref;
+    }
+
+    //在数据区里占用length字节  当前块放不下就开一个新块（比块还大的记录单独占一块）
+    private long reserve(int length) {
+        ByteBuffer current = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (current == null || current.remaining() < length) {
+            current = ByteBuffer.allocateDirect(Math.max(chunkSize, length));
+            chunks.add(current);
+        }
+        int offset = current.position();
+        current.position(offset + length);
+        usedBytes += length;
+        return ((long) chunks.size() << 32) | offset;
+    }
+
+    private ByteBuffer chunkOf(long ref) {
+        return chunks.get((int) (ref >>> 32) - 1);
+    }
+
+    private static int offsetOf(long ref) {
+        return (int) ref;
+    }
+
+    private boolean keyEquals(long ref, byte[] k) {
+        ByteBuffer chunk = chunkOf(ref);
+        int offset = offsetOf(ref);
+        if (chunk.getInt(offset) != k.length)
+            return false;
+        for (int i = 0; i < k.length; i++)
+            if (chunk.get(offset + RECORD_HEADER + i) != k[i])
+                return false;
+        return true;
+    }
+
+    private byte[] readValue(long ref) {
+        ByteBuffer chunk = chunkOf(ref);
+        int offset = offsetOf(ref);
+        int keyLength = chunk.getInt(offset);
+        byte[] v = new byte[chunk.getInt(offset + 4)];
+        for (int i = 0; i < v.length; i++)
+            v[i] = chunk.get(offset + RECORD_HEADER + keyLength + i);
+        return v;
+    }
+
+    //键的字节的哈希  同String.hashCode的算法，再做Hashmap.hash的高低位异或
+    static int hash(byte[] k) {
+        int h = 1;
+        for (byte b : k)
+            h = 31 * h + b;
+        return h ^ (h >>> 16);
+    }
+
+    private static int mix(int h) {
+        return IntObjectMap.mix(h);
+    }
+}
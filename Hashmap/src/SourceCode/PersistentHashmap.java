@@ -0,0 +1,490 @@
+package SourceCode;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * 不可变的持久化哈希表（HAMT，hash array mapped trie，参考Clojure的PersistentHashMap）
+ * 每次修改都复制整张Hashmap再发布，一次修改就是O(n)的时间和内存；这里put/remove只复制从根到目标节点这一条路径，
+ * 其余节点和旧版本共享，一次修改复制O(log32 n)个节点，旧版本保持不变，所以每个版本本身就是一个快照
+ *
+ * 结构：hash取ChainedHashmap.hash(key)，每层用5位（第0层是最低5位）在节点的32个位置中选一个
+ *   BitmapIndexedNode：bitmap标记哪些位置有内容，array只存有内容的位置，每个位置占两格：
+ *     (键, 值) 是一个条目；(null, 子节点) 是下一层
+ *   CollisionNode：hash完全相同的多个键，线性查找
+ * null键单独存放
+ *
+ * 批量修改用Transient：同一个Transient创建的节点可以就地修改，不用每次复制路径，最后persistent()得到不可变的版本
+ * Ref是发布用的原子引用：读者get()拿到某个版本后，随便读都是一致的，不需要加锁；写者用update/batch以CAS的方式替换版本
+ */
+public final class PersistentHashmap<K, V> {
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentHashmap EMPTY = new PersistentHashmap<>(0, null, false, null);
+    private static final Object NOT_FOUND = new Object();
+
+    private final int size;
+    private final Node root;
+    private final boolean hasNull;
+    private final V nullValue;
+
+    private PersistentHashmap(int size, Node root, boolean hasNull, V nullValue) {
+        this.size = size;
+        this.root = root;
+        this.hasNull = hasNull;
+        this.nullValue = nullValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashmap<K, V> empty() {
+        return (PersistentHashmap<K, V>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null)
+            return hasNull ? nullValue : null;
+        return root == null ? null : (V) root.find(0, ChainedHashmap.hash(key), key, null);
+    }
+
+    public boolean containsKey(Object key) {
+        if (key == null)
+            return hasNull;
+        return root != null && root.find(0, ChainedHashmap.hash(key), key, NOT_FOUND) != NOT_FOUND;
+    }
+
+    //返回新版本  值没有变化时返回this
+    public PersistentHashmap<K, V> put(K key, V value) {
+        if (key == null) {
+            if (hasNull && value == nullValue)
+                return this;
+            return new PersistentHashmap<>(hasNull ? size : size + 1, root, true, value);
+        }
+        Box changed = new Box();
+        Node newRoot = (root == null ? BitmapIndexedNode.EMPTY : root)
+                .assoc(null, 0, ChainedHashmap.hash(key), key, value, changed);
+        if (newRoot == root)
+            return this;
+        return new PersistentHashmap<>(changed.value ? size + 1 : size, newRoot, hasNull, nullValue);
+    }
+
+    //返回新版本  键不存在时返回this
+    public PersistentHashmap<K, V> remove(Object key) {
+        if (key == null)
+            return hasNull ? new PersistentHashmap<K, V>(size - 1, root, false, null) : this;
+        if (root == null)
+            return this;
+        Box changed = new Box();
+        Node newRoot = root.without(null, 0, ChainedHashmap.hash(key), key, changed);
+        if (!changed.value)
+            return this;
+        return new PersistentHashmap<>(size - 1, newRoot, hasNull, nullValue);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (hasNull)
+            action.accept(null, nullValue);
+        if (root != null)
+            root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    //基于这个版本批量修改  这个版本本身不受影响
+    public Transient<K, V> asTransient() {
+        return new Transient<>(this);
+    }
+
+    /**
+     * 批量修改  只能在一个线程里使用，persistent()之后不能再用
+     */
+    public static final class Transient<K, V> {
+        private final Edit edit = new Edit();
+        private final Box changed = new Box();
+        private Node root;
+        private int size;
+        private boolean hasNull;
+        private V nullValue;
+
+        Transient(PersistentHashmap<K, V> map) {
+            this.root = map.root;
+            this.size = map.size;
+            this.hasNull = map.hasNull;
+            this.nullValue = map.nullValue;
+        }
+
+        public int size() {
+            ensureEditable();
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            ensureEditable();
+            if (key == null)
+                return hasNull ? nullValue : null;
+            return root == null ? null : (V) root.find(0, ChainedHashmap.hash(key), key, null);
+        }
+
+        public Transient<K, V> put(K key, V value) {
+            ensureEditable();
+            if (key == null) {
+                if (!hasNull)
+                    size++;
+                hasNull = true;
+                nullValue = value;
+                return this;
+            }
+            changed.value = false;
+            root = (root == null ? BitmapIndexedNode.EMPTY : root)
+                    .assoc(edit, 0, ChainedHashmap.hash(key), key, value, changed);
+            if (changed.value)
+                size++;
+            return this;
+        }
+
+        public Transient<K, V> remove(Object key) {
+            ensureEditable();
+            if (key == null) {
+                if (hasNull)
+                    size--;
+                hasNull = false;
+                nullValue = null;
+                return this;
+            }
+            if (root == null)
+                return this;
+            changed.value = false;
+            root = root.without(edit, 0, ChainedHashmap.hash(key), key, changed);
+            if (changed.value)
+                size--;
+            return this;
+        }
+
+        //结束批量修改  之后这些节点不会再被就地修改
+        public PersistentHashmap<K, V> persistent() {
+            ensureEditable();
+            edit.active = false;
+            if (size == 0)
+                return empty();
+            return new PersistentHashmap<>(size, root, hasNull, nullValue);
+        }
+
+        private void ensureEditable() {
+            if (!edit.active)
+                throw new IllegalStateException("Transient used after persistent() call");
+        }
+    }
+
+    /**
+     * 发布用的原子引用
+     * 读者：get()返回当前版本，之后的读都在这个版本上，不受写者影响
+     * 写者：update/batch基于当前版本计算新版本再CAS替换，失败就在最新版本上重算，所以f不能有副作用
+     */
+    public static final class Ref<K, V> {
+        private final AtomicReference<PersistentHashmap<K, V>> current;
+
+        public Ref() {
+            this(PersistentHashmap.<K, V>empty());
+        }
+
+        public Ref(PersistentHashmap<K, V> initial) {
+            current = new AtomicReference<>(initial);
+        }
+
+        public PersistentHashmap<K, V> get() {
+            return current.get();
+        }
+
+        public PersistentHashmap<K, V> update(UnaryOperator<PersistentHashmap<K, V>> f) {
+            for (; ; ) {
+                PersistentHashmap<K, V> prev = current.get();
+                PersistentHashmap<K, V> next = f.apply(prev);
+                if (current.compareAndSet(prev, next))
+                    return next;
+            }
+        }
+
+        //在一个Transient里做完所有修改再一次发布
+        public PersistentHashmap<K, V> batch(Consumer<? super Transient<K, V>> updates) {
+            return update(map -> {
+                Transient<K, V> t = map.asTransient();
+                updates.accept(t);
+                return t.persistent();
+            });
+        }
+    }
+
+    //Transient的身份  节点的edit和当前Transient的相同才能就地修改
+    static final class Edit {
+        volatile boolean active = true;
+    }
+
+    static final class Box {
+        boolean value;
+    }
+
+    abstract static class Node {
+        abstract Object find(int shift, int hash, Object key, Object notFound);
+
+        //返回插入或替换后的节点  新增了条目时changed置为true
+        abstract Node assoc(Edit edit, int shift, int hash, Object key, Object value, Box changed);
+
+        //返回删除后的节点  节点变空时返回null，删除了条目时changed置为true
+        abstract Node without(Edit edit, int shift, int hash, Object key, Box changed);
+
+        abstract void forEach(BiConsumer<Object, Object> action);
+
+        //只有一个条目时返回{键, 值}，否则返回null
+        abstract Object[] singleEntry();
+    }
+
+    static final class BitmapIndexedNode extends Node {
+        static final BitmapIndexedNode EMPTY = new BitmapIndexedNode(null, 0, new Object[0]);
+
+        final Edit edit;
+        int bitmap;
+        //Transient创建的节点可能比实际需要的长，有效长度是2*bitCount(bitmap)
+        Object[] array;
+
+        BitmapIndexedNode(Edit edit, int bitmap, Object[] array) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        static int bitpos(int hash, int shift) {
+            return 1 << ((hash >>> shift) & 31);
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        Object find(int shift, int hash, Object key, Object notFound) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0)
+                return notFound;
+            int idx = index(bit) << 1;
+            Object k = array[idx];
+            Object v = array[idx + 1];
+            if (k == null)
+                return ((Node) v).find(shift + 5, hash, key, notFound);
+            return key.equals(k) ? v : notFound;
+        }
+
+        Node assoc(Edit edit, int shift, int hash, Object key, Object value, Box changed) {
+            int bit = bitpos(hash, shift);
+            int idx = index(bit) << 1;
+            if ((bitmap & bit) != 0) {
+                Object k = array[idx];
+                Object v = array[idx + 1];
+                if (k == null) {
+                    Node n = ((Node) v).assoc(edit, shift + 5, hash, key, value, changed);
+                    return n == v ? this : editAndSet(edit, idx + 1, n);
+                }
+                if (key.equals(k))
+                    return v == value ? this : editAndSet(edit, idx + 1, value);
+                //位置被另一个键占了  往下长一层
+                changed.value = true;
+                Node sub = createNode(edit, shift + 5, k, v, hash, key, value);
+                BitmapIndexedNode node = ensureEditable(edit);
+                node.array[idx] = null;
+                node.array[idx + 1] = sub;
+                return node;
+            }
+            changed.value = true;
+            int n = Integer.bitCount(bitmap);
+            if (edit != null && this.edit == edit && array.length >= 2 * (n + 1)) {
+                System.arraycopy(array, idx, array, idx + 2, 2 * n - idx);
+                array[idx] = key;
+                array[idx + 1] = value;
+                bitmap |= bit;
+                return this;
+            }
+            //Transient多留几格  后面的插入可以就地进行
+            Object[] newArray = new Object[2 * (n + (edit != null ? 4 : 1))];
+            System.arraycopy(array, 0, newArray, 0, idx);
+            newArray[idx] = key;
+            newArray[idx + 1] = value;
+            System.arraycopy(array, idx, newArray, idx + 2, 2 * n - idx);
+            return new BitmapIndexedNode(edit, bitmap | bit, newArray);
+        }
+
+        Node without(Edit edit, int shift, int hash, Object key, Box changed) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0)
+                return this;
+            int idx = index(bit) << 1;
+            Object k = array[idx];
+            Object v = array[idx + 1];
+            if (k == null) {
+                Node n = ((Node) v).without(edit, shift + 5, hash, key, changed);
+                if (n == v)
+                    return this;
+                if (n == null)
+                    return bitmap == bit ? null : removePair(edit, bit, idx);
+                //子节点只剩一个条目  把它提到这一层，避免留下一串只有一个条目的节点
+                Object[] single = n.singleEntry();
+                if (single != null) {
+                    BitmapIndexedNode node = ensureEditable(edit);
+                    node.array[idx] = single[0];
+                    node.array[idx + 1] = single[1];
+                    return node;
+                }
+                return editAndSet(edit, idx + 1, n);
+            }
+            if (!key.equals(k))
+                return this;
+            changed.value = true;
+            return bitmap == bit ? null : removePair(edit, bit, idx);
+        }
+
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0, n = 2 * Integer.bitCount(bitmap); i < n; i += 2) {
+                if (array[i] == null)
+                    ((Node) array[i + 1]).forEach(action);
+                else
+                    action.accept(array[i], array[i + 1]);
+            }
+        }
+
+        Object[] singleEntry() {
+            if (Integer.bitCount(bitmap) == 1 && array[0] != null)
+                return new Object[]{array[0], array[1]};
+            return null;
+        }
+
+        private BitmapIndexedNode ensureEditable(Edit edit) {
+            if (edit != null && this.edit == edit)
+                return this;
+            int n = Integer.bitCount(bitmap);
+            Object[] newArray = new Object[edit != null ? 2 * (n + 1) : 2 * n];
+            System.arraycopy(array, 0, newArray, 0, 2 * n);
+            return new BitmapIndexedNode(edit, bitmap, newArray);
+        }
+
+        private BitmapIndexedNode editAndSet(Edit edit, int i, Object a) {
+            BitmapIndexedNode node = ensureEditable(edit);
+            node.array[i] = a;
+            return node;
+        }
+
+        private BitmapIndexedNode removePair(Edit edit, int bit, int idx) {
+            int n = Integer.bitCount(bitmap);
+            if (edit != null && this.edit == edit) {
+                System.arraycopy(array, idx + 2, array, idx, 2 * n - idx - 2);
+                array[2 * n - 2] = null;
+                array[2 * n - 1] = null;
+                bitmap ^= bit;
+                return this;
+            }
+            Object[] newArray = new Object[2 * (n - 1)];
+            System.arraycopy(array, 0, newArray, 0, idx);
+            System.arraycopy(array, idx + 2, newArray, idx, 2 * n - idx - 2);
+            return new BitmapIndexedNode(edit, bitmap ^ bit, newArray);
+        }
+
+        //两个条目放到新的一层  hash完全相同时用CollisionNode
+        private static Node createNode(Edit edit, int shift, Object key1, Object value1,
+                                       int hash2, Object key2, Object value2) {
+            int hash1 = ChainedHashmap.hash(key1);
+            if (hash1 == hash2)
+                return new CollisionNode(edit, hash1, 2, new Object[]{key1, value1, key2, value2});
+            Box box = new Box();
+            return EMPTY.assoc(edit, shift, hash1, key1, value1, box)
+                    .assoc(edit, shift, hash2, key2, value2, box);
+        }
+    }
+
+    static final class CollisionNode extends Node {
+        final Edit edit;
+        final int hash;
+        int count;
+        Object[] array;
+
+        CollisionNode(Edit edit, int hash, int count, Object[] array) {
+            this.edit = edit;
+            this.hash = hash;
+            this.count = count;
+            this.array = array;
+        }
+
+        int indexOf(Object key) {
+            for (int i = 0; i < 2 * count; i += 2)
+                if (key.equals(array[i]))
+                    return i;
+            return -1;
+        }
+
+        Object find(int shift, int hash, Object key, Object notFound) {
+            int idx = indexOf(key);
+            return idx < 0 ? notFound : array[idx + 1];
+        }
+
+        Node assoc(Edit edit, int shift, int hash, Object key, Object value, Box changed) {
+            if (hash != this.hash) {
+                //hash不同  这一层改成BitmapIndexedNode，把自己放进去
+                return new BitmapIndexedNode(edit, BitmapIndexedNode.bitpos(this.hash, shift), new Object[]{null, this})
+                        .assoc(edit, shift, hash, key, value, changed);
+            }
+            int idx = indexOf(key);
+            if (idx >= 0) {
+                if (array[idx + 1] == value)
+                    return this;
+                CollisionNode node = ensureEditable(edit, 0);
+                node.array[idx + 1] = value;
+                return node;
+            }
+            changed.value = true;
+            CollisionNode node = ensureEditable(edit, 1);
+            node.array[2 * count] = key;
+            node.array[2 * count + 1] = value;
+            node.count = count + 1;
+            return node;
+        }
+
+        Node without(Edit edit, int shift, int hash, Object key, Box changed) {
+            int idx = indexOf(key);
+            if (idx < 0)
+                return this;
+            changed.value = true;
+            if (count == 1)
+                return null;
+            CollisionNode node = ensureEditable(edit, 0);
+            int n = 2 * count;
+            System.arraycopy(node.array, idx + 2, node.array, idx, n - idx - 2);
+            node.array[n - 2] = null;
+            node.array[n - 1] = null;
+            node.count = count - 1;
+            return node;
+        }
+
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < 2 * count; i += 2)
+                action.accept(array[i], array[i + 1]);
+        }
+
+        Object[] singleEntry() {
+            return count == 1 ? new Object[]{array[0], array[1]} : null;
+        }
+
+        //返回可以就地修改、至少还能放extra个条目的节点
+        private CollisionNode ensureEditable(Edit edit, int extra) {
+            if (edit != null && this.edit == edit && array.length >= 2 * (count + extra))
+                return this;
+            Object[] newArray = new Object[2 * (count + extra)];
+            System.arraycopy(array, 0, newArray, 0, 2 * count);
+            return new CollisionNode(edit, hash, count, newArray);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package SourceCode;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 把键或值转成字节  堆外哈希表和快照文件里存的都是序列化后的字节
+ * 键是按字节比较的，所以同一个键每次序列化的结果必须完全一样
+ */
+public interface Serializer<T> {
+
+    byte[] serialize(T value);
+
+    T deserialize(byte[] bytes);
+
+    Serializer<String> STRING = new Serializer<String>() {
+        public byte[] serialize(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        public String deserialize(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    //大端8字节
+    Serializer<Long> LONG = new Serializer<Long>() {
+        public byte[] serialize(Long value) {
+            return ByteBuffer.allocate(8).putLong(value).array();
+        }
+
+        public Long deserialize(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getLong();
+        }
+    };
+
+    //大端4字节
+    Serializer<Integer> INTEGER = new Serializer<Integer>() {
+        public byte[] serialize(Integer value) {
+            return ByteBuffer.allocate(4).putInt(value).array();
+        }
+
+        public Integer deserialize(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+    };
+
+    //原样存放  注意不会复制数组
+    Serializer<byte[]> BYTES = new Serializer<byte[]>() {
+        public byte[] serialize(byte[] value) {
+            return value;
+        }
+
+        public byte[] deserialize(byte[] bytes) {
+            return bytes;
+        }
+    };
+}
@@ -0,0 +1,113 @@
+package SourceCode;
+
+import java.util.function.Function;
+
+/**
+ * 线程安全的有界缓存  按键的hash分成若干段，每段是一个BoundedCache，用段本身做锁
+ * BoundedCache的get也会调整链表顺序，所以读写都要加锁；段数一般取cpu核数的几倍，锁冲突就很少了
+ * 每段的容量上限是总上限的1/段数，所以淘汰是按段近似的
+ */
+public class StripedCache<K, V> {
+
+    private final BoundedCache<K, V>[] stripes;
+    private final int mask;
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    StripedCache(BoundedCache.Builder<K, V> builder, int stripeCount) {
+        int n = ChainedHashmap.tableSizeFor(stripeCount);
+        long maximum = builder.maximum();
+        stripes = (BoundedCache<K, V>[]) new BoundedCache[n];
+        for (int i = 0; i < n; i++)
+            stripes[i] = new BoundedCache<>(builder, Math.max(1, (maximum + n - 1) / n));
+        mask = n - 1;
+    }
+
+    //用hash的高位选段  低位留给段内的table
+    private BoundedCache<K, V> stripeFor(Object key) {
+        return stripes[((ChainedHashmap.hash(key) * 0x9E3779B9) >>> 16) & mask];
+    }
+
+    public V get(Object key) {
+        BoundedCache<K, V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    //loader在段锁内执行  同一段的其他操作要等它加载完
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        BoundedCache<K, V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.get(key, loader);
+        }
+    }
+
+    public boolean containsKey(Object key) {
+        BoundedCache<K, V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.containsKey(key);
+        }
+    }
+
+    public V put(K key, V value) {
+        BoundedCache<K, V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.put(key, value);
+        }
+    }
+
+    public V putIfAbsent(K key, V value) {
+        BoundedCache<K, V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.putIfAbsent(key, value);
+        }
+    }
+
+    public V remove(Object key) {
+        BoundedCache<K, V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.remove(key);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (BoundedCache<K, V> stripe : stripes)
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        return size;
+    }
+
+    public long weightedSize() {
+        long weightedSize = 0;
+        for (BoundedCache<K, V> stripe : stripes)
+            synchronized (stripe) {
+                weightedSize += stripe.weightedSize();
+            }
+        return weightedSize;
+    }
+
+    public CacheStats stats() {
+        CacheStats stats = new CacheStats(0, 0, 0, 0, 0);
+        for (BoundedCache<K, V> stripe : stripes)
+            synchronized (stripe) {
+                stats = stats.plus(stripe.stats());
+            }
+        return stats;
+    }
+
+    public void cleanUp() {
+        for (BoundedCache<K, V> stripe : stripes)
+            synchronized (stripe) {
+                stripe.cleanUp();
+            }
+    }
+
+    public void clear() {
+        for (BoundedCache<K, V> stripe : stripes)
+            synchronized (stripe) {
+                stripe.clear();
+            }
+    }
+}
@@ -0,0 +1,274 @@
+package SourceCode;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.function.BiConsumer;
+
+/**
+ * Swiss table风格的哈希表（参考abseil的flat_hash_map）
+ * Hashmap查找时要沿着Node.next在堆上跳来跳去，查不到的键也要把整条链走完，每一跳都可能是一次cache miss
+ * 这里键和值交替放在同一个数组里（slots[2i]是键，slots[2i+1]是值，命中时通常在同一个cache line），另外每个槽有一个控制字节，8个槽的控制字节拼成一个long（一组）：
+ *   0x80 空槽  0xFE 已删除  0x00~0x7F 有条目，低7位是hash的低7位（h2）
+ * hash的其余25位（h1）决定从哪一组开始找，查找时先用位运算（SWAR）一次比较一组里8个控制字节和h2，
+ * 只有控制字节相同的槽（误判率1/128）才去比较键；一组里有空槽就说明键不存在，不需要继续
+ * 组之间按1、2、3...的步长跳（三角数探测），组数是2的幂时能访问到每一组
+ *
+ * 负载上限是7/8，删除时如果所在组里还有空槽就直接标记为空，否则标记为已删除（墓碑），
+ * 墓碑太多时按原容量重建，去掉墓碑
+ * jdk8上没有Vector API，一组8字节用long的位运算来比较
+ * 允许null键和null值，和ChainedHashmap一样不是线程安全的
+ */
+public class SwissHashmap<K, V> {
+
+    static final int GROUP_WIDTH = 8;
+    //slots的长度是容量的两倍  不能超过数组的最大长度
+    static final int MAXIMUM_CAPACITY = 1 << 29;
+    static final long LSB = 0x0101010101010101L;
+    static final long MSB = 0x8080808080808080L;
+    static final byte EMPTY = (byte) 0x80;
+    static final byte DELETED = (byte) 0xFE;
+    static final long EMPTY_GROUP = 0x8080808080808080L;
+    //null键在数组里用它代替
+    static final Object NULL_KEY = new Object();
+
+    private long[] ctrl;
+    //slots[2i]是槽i的键  为null表示没有条目；slots[2i+1]是值
+    private Object[] slots;
+    private int capacity;
+    private int groupMask;
+    private int size;
+    //还能往空槽里放多少个条目  为0时需要扩容或重建
+    private int growthLeft;
+    private transient int modCount;
+
+    public SwissHashmap() {
+        this(16);
+    }
+
+    //initialCapacity是预计的条目数
+    public SwissHashmap(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        allocate(capacityFor(initialCapacity));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int i = find(key);
+        return i < 0 ? null : (V) slots[(i << 1) + 1];
+    }
+
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    public V put(K key, V value) {
+        return putVal(key, value, false);
+    }
+
+    public V putIfAbsent(K key, V value) {
+        return putVal(key, value, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int i = find(key);
+        if (i < 0)
+            return null;
+        V oldValue = (V) slots[(i << 1) + 1];
+        slots[i << 1] = null;
+        slots[(i << 1) + 1] = null;
+        //组里还有空槽  说明没有键探测经过这一组，可以直接标记为空
+        if (matchEmpty(ctrl[i >>> 3]) != 0) {
+            setCtrl(i, EMPTY);
+            growthLeft++;
+        } else {
+            setCtrl(i, DELETED);
+        }
+        size--;
+        modCount++;
+        return oldValue;
+    }
+
+    public void clear() {
+        modCount++;
+        Arrays.fill(ctrl, EMPTY_GROUP);
+        Arrays.fill(slots, null);
+        size = 0;
+        growthLeft = maxLoad(capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        int mc = modCount;
+        for (int g = 0; g < ctrl.length; g++) {
+            //控制字节最高位为0的是有条目的槽
+            for (long full = ~ctrl[g] & MSB; full != 0; full &= full - 1) {
+                int i = (g << 3) + (Long.numberOfTrailingZeros(full) >>> 3);
+                action.accept((K) unmaskNull(slots[i << 1]), (V) slots[(i << 1) + 1]);
+            }
+        }
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    //返回键所在的槽  不存在时返回-1
+    private int find(Object key) {
+        Object k = maskNull(key);
+        int h = hash(k);
+        long pattern = LSB * (h & 0x7F);
+        int g = (h >>> 7) & groupMask;
+        for (int step = 1; ; step++) {
+            long word = ctrl[g];
+            for (long m = match(word, pattern); m != 0; m &= m - 1) {
+                int i = (g << 3) + (Long.numberOfTrailingZeros(m) >>> 3);
+                Object c = slots[i << 1];
+                if (c == k || k.equals(c))
+                    return i;
+            }
+            if (matchEmpty(word) != 0)
+                return -1;
+            g = (g + step) & groupMask;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V putVal(K key, V value, boolean onlyIfAbsent) {
+        Object k = maskNull(key);
+        int h = hash(k);
+        long pattern = LSB * (h & 0x7F);
+        int g = (h >>> 7) & groupMask;
+        //探测路上第一个空槽或墓碑  键不存在时放在这里
+        int slot = -1;
+        for (int step = 1; ; step++) {
+            long word = ctrl[g];
+            for (long m = match(word, pattern); m != 0; m &= m - 1) {
+                int i = (g << 3) + (Long.numberOfTrailingZeros(m) >>> 3);
+                Object c = slots[i << 1];
+                if (c == k || k.equals(c)) {
+                    V oldValue = (V) slots[(i << 1) + 1];
+                    if (!onlyIfAbsent || oldValue == null)
+                        slots[(i << 1) + 1] = value;
+                    return oldValue;
+                }
+            }
+            long free = word & MSB;
+            if (slot < 0 && free != 0)
+                slot = (g << 3) + (Long.numberOfTrailingZeros(free) >>> 3);
+            if (matchEmpty(word) != 0)
+                break;
+            g = (g + step) & groupMask;
+        }
+        //墓碑可以直接复用，占用空槽要消耗growthLeft
+        if (growthLeft == 0 && ctrlAt(slot) == EMPTY) {
+            rehash();
+            slot = findInsertSlot(h);
+        }
+        if (ctrlAt(slot) == EMPTY)
+            growthLeft--;
+        setCtrl(slot, (byte) (h & 0x7F));
+        slots[slot << 1] = k;
+        slots[(slot << 1) + 1] = value;
+        size++;
+        modCount++;
+        return null;
+    }
+
+    //在没有墓碑的新表里找第一个空槽
+    private int findInsertSlot(int h) {
+        int g = (h >>> 7) & groupMask;
+        for (int step = 1; ; step++) {
+            long empty = matchEmpty(ctrl[g]);
+            if (empty != 0)
+                return (g << 3) + (Long.numberOfTrailingZeros(empty) >>> 3);
+            g = (g + step) & groupMask;
+        }
+    }
+
+    //条目不到容量的7/16时说明大部分是墓碑，按原容量重建；否则容量翻倍
+    private void rehash() {
+        int newCapacity = size <= capacity * 7L / 16 ? capacity : capacity << 1;
+        if (newCapacity > MAXIMUM_CAPACITY)
+            throw new IllegalStateException("SwissHashmap is full");
+        long[] oldCtrl = ctrl;
+        Object[] oldSlots = slots;
+        allocate(newCapacity);
+        for (int g = 0; g < oldCtrl.length; g++) {
+            for (long full = ~oldCtrl[g] & MSB; full != 0; full &= full - 1) {
+                int i = (g << 3) + (Long.numberOfTrailingZeros(full) >>> 3);
+                int h = hash(oldSlots[i << 1]);
+                int slot = findInsertSlot(h);
+                setCtrl(slot, (byte) (h & 0x7F));
+                slots[slot << 1] = oldSlots[i << 1];
+                slots[(slot << 1) + 1] = oldSlots[(i << 1) + 1];
+            }
+        }
+        growthLeft -= size;
+    }
+
+    private void allocate(int capacity) {
+        ctrl = new long[capacity / GROUP_WIDTH];
+        Arrays.fill(ctrl, EMPTY_GROUP);
+        slots = new Object[capacity << 1];
+        this.capacity = capacity;
+        groupMask = ctrl.length - 1;
+        growthLeft = maxLoad(capacity);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long capacity = Math.max(GROUP_WIDTH, (long) expectedSize * 8 / 7 + 1);
+        return IntObjectMap.tableSizeFor((int) Math.min(capacity, MAXIMUM_CAPACITY));
+    }
+
+    private static int maxLoad(int capacity) {
+        return capacity - capacity / 8;
+    }
+
+    /**
+     * 一组8个控制字节中等于h2的字节，对应字节的最高位置1
+     * x的某个字节为0时(x - LSB)的这个字节借位变成0xFF；空槽和墓碑的最高位是1，~x的最高位为0，不会被选中
+     * 借位可能让更高的字节误判，找到后还要比较键，所以没有影响
+     */
+    static long match(long word, long pattern) {
+        long x = word ^ pattern;
+        return (x - LSB) & ~x & MSB;
+    }
+
+    //空槽0x80的第1位是0，墓碑0xFE的第1位是1  把第1位移到最高位来区分
+    static long matchEmpty(long word) {
+        return word & ~(word << 6) & MSB;
+    }
+
+    private byte ctrlAt(int i) {
+        return (byte) (ctrl[i >>> 3] >>> ((i & 7) << 3));
+    }
+
+    private void setCtrl(int i, byte b) {
+        int shift = (i & 7) << 3;
+        ctrl[i >>> 3] = (ctrl[i >>> 3] & ~(0xFFL << shift)) | ((b & 0xFFL) << shift);
+    }
+
+    //先同ChainedHashmap.hash，再乘黄金分割数，最后把高16位异或到低16位
+    //乘法只会把低位的变化往高位进位，乘完后低7位（h2）仍然只取决于输入的低7位，比如128的倍数的Integer键h2全是0，
+    //每组的8个槽都会匹配，退化成逐个equals；乘积的高位取决于输入的所有位，异或下来之后h2和h1都和输入的每一位有关
+    static int hash(Object k) {
+        int h = ChainedHashmap.hash(k) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static Object maskNull(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    private static Object unmaskNull(Object key) {
+        return key == NULL_KEY ? null : key;
+    }
+}
@@ -0,0 +1,96 @@
+import SourceCode.ChainedHashmap;
+import SourceCode.SwissHashmap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * SwissHashmap的基准测试
+ * 在1K到条目数的不同规模下比较拉链法（HashMap、ChainedHashmap）和SwissHashmap的put、命中get、未命中get
+ *
+ * 用法：java SwissHashmapBenchmark [条目数]
+ */
+public class SwissHashmapBenchmark {
+
+    public static void main(String[] args) {
+        run(MapBenchmark.keys(args));
+    }
+
+    static void run(int[] keys) {
+        int n = keys.length;
+        System.out.printf("%n%-28s %10s %12s %12s %12s%n", "map", "entries", "put(ns/op)", "hit(ns/op)", "miss(ns/op)");
+        for (long size = 1000; ; size *= 100) {
+            int entries = (int) Math.min(size, n);
+            chainedVsSwiss(entries);
+            if (entries == n)
+                break;
+        }
+    }
+
+    //命中的键都是偶数，未命中的键都是奇数  小规模时重复多轮，让每项至少做一千万次操作
+    static void chainedVsSwiss(int entries) {
+        Integer[] hits = new Integer[entries];
+        Integer[] misses = new Integer[entries];
+        Random random = new Random(42);
+        for (int i = 0; i < entries; i++) {
+            int k = random.nextInt() & ~1;
+            hits[i] = k;
+            misses[i] = k | 1;
+        }
+        int rounds = Math.max(1, 10_000_000 / entries);
+        for (int round = 0; round < 3; round++) {
+            boolean print = round == 2;
+            Map<Integer, Integer> hashMap = new HashMap<>();
+            measure("HashMap", entries, rounds, print, () -> {
+                hashMap.clear();
+                for (Integer k : hits)
+                    hashMap.put(k, k);
+            }, () -> count(hits, hashMap::get), () -> count(misses, hashMap::get));
+            ChainedHashmap<Integer, Integer> chained = new ChainedHashmap<>();
+            measure("ChainedHashmap", entries, rounds, print, () -> {
+                chained.clear();
+                for (Integer k : hits)
+                    chained.put(k, k);
+            }, () -> count(hits, chained::get), () -> count(misses, chained::get));
+            SwissHashmap<Integer, Integer> swiss = new SwissHashmap<>();
+            measure("SwissHashmap", entries, rounds, print, () -> {
+                swiss.clear();
+                for (Integer k : hits)
+                    swiss.put(k, k);
+            }, () -> count(hits, swiss::get), () -> count(misses, swiss::get));
+        }
+    }
+
+    static long count(Integer[] keys, Function<Integer, Integer> get) {
+        long found = 0;
+        for (Integer k : keys)
+            if (get.apply(k) != null)
+                found++;
+        return found;
+    }
+
+    //put只做一轮（clear会保留扩容后的数组）  get各做rounds轮
+    static void measure(String name, int entries, int rounds, boolean print,
+                        Runnable put, LongSupplier hit, LongSupplier miss) {
+        long start = System.nanoTime();
+        put.run();
+        long putNanos = System.nanoTime() - start;
+        long found = 0;
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++)
+            found += hit.getAsLong();
+        long hitNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++)
+            found -= miss.getAsLong();
+        long missNanos = System.nanoTime() - start;
+        if (found == 0)
+            throw new IllegalStateException(name + " found nothing");
+        if (print)
+            System.out.printf("%-28s %10d %12.1f %12.1f %12.1f%n", name, entries, (double) putNanos / entries,
+                    (double) hitNanos / rounds / entries, (double) missNanos / rounds / entries);
+    }
+}
@@ -0,0 +1,40 @@
+import SourceCode.SwissHashmap;
+
+import java.util.Random;
+
+/**
+ * SwissHashmap的检查
+ * ①.和HashMap比较，另外检查putIfAbsent不覆盖已有的值
+ * ②.反复插入再全部删除：删除留下的墓碑多了会原地重建，重建后查找不能丢条目，也不能无限扩容
+ * ③.只在高位不同的键（低位全是0）也能正确存取，h1和h2都用到了高位
+ */
+public class SwissHashmapTest {
+
+    public static void main(String[] args) {
+        SwissHashmap<Integer, Integer> map = new SwissHashmap<>();
+        ModelCheck<Integer, Integer> check = new ModelCheck<Integer, Integer>("SwissHashmap",
+                map::put, map::remove, map::get, map::size)
+                .run(500_000, random -> random.nextInt(2000), Random::nextInt);
+        for (int key = 0; key < 2000; key++)
+            check.expect(check.model.putIfAbsent(key, -key), map.putIfAbsent(key, -key), "putIfAbsent", key);
+        check.expectContents(map::forEach);
+
+        SwissHashmap<Integer, Integer> churn = new SwissHashmap<>();
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 1000; i++)
+                churn.put(round * 1000 + i, i);
+            for (int i = 0; i < 1000; i++)
+                ModelCheck.check(churn.remove(round * 1000 + i) == i, "反复删除：第" + round + "轮丢了条目");
+            ModelCheck.check(churn.isEmpty(), "反复删除：第" + round + "轮删完后size=" + churn.size());
+        }
+        new ModelCheck<Integer, Integer>("删空之后", churn::put, churn::remove, churn::get, churn::size)
+                .run(100_000, random -> random.nextInt(2000), Random::nextInt)
+                .expectContents(churn::forEach);
+
+        SwissHashmap<Integer, Integer> strided = new SwissHashmap<>();
+        new ModelCheck<Integer, Integer>("只在高位不同的键", strided::put, strided::remove, strided::get, strided::size)
+                .run(200_000, random -> random.nextInt(4000) << 20, Random::nextInt)
+                .expectContents(strided::forEach);
+        System.out.println("SwissHashmap：全部检查通过");
+    }
+}